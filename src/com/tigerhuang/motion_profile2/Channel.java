@@ -0,0 +1,36 @@
+package com.tigerhuang.motion_profile2;
+
+/**
+ * Possible channels of a time profile
+ * 
+ * @author Tiger Huang
+ *
+ */
+enum Channel {
+	LINEAR_POSITION(0), LINEAR_VELOCITY(1), LINEAR_ACCELERATION(2),
+	ANGULAR_POSITION(3), ANGULAR_VELOCITY(4), ANGULAR_ACCELERATION(5),
+	LEFT_VOLTAGE(6), RIGHT_VOLTAGE(7),
+	LEFT_DISTANCE(8), RIGHT_DISTANCE(9);
+
+	// Identifier written to files, which must never change once assigned
+	final int id;
+
+	Channel(int id) {
+		this.id = id;
+	}
+
+	/**
+	 * Finds the channel with an identifier.
+	 * 
+	 * @param id The identifier written to a file
+	 * @return The channel, or null if no channel has the identifier
+	 */
+	static Channel fromId(int id) {
+		for(Channel channel:values()) {
+			if(channel.id == id) {
+				return channel;
+			}
+		}
+		return null;
+	}
+}
@@ -0,0 +1,198 @@
+package com.tigerhuang.motion_profile2;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * A time profile stored with single precision channels.
+ *
+ * Only the chosen channels are kept, which halves the memory and file size of each channel
+ * compared to a TimeProfile. The binary format is big endian, starting with a header of the magic
+ * number, the format version, the number of channels, the number of timesteps and the timestep,
+ * followed by the identifier of each channel and then the values of each channel in turn.
+ *
+ * @author Tiger Huang
+ *
+ */
+public class CompactProfile {
+	// Identifies the binary format
+	private static final int MAGIC = 0x4D503246;
+	// Version of the binary format
+	private static final int VERSION = 2;
+	// Number of values allocated for a channel before more have been read
+	private static final int READ_CHUNK = 4096;
+
+	// Channels that are stored, in order
+	private Channel[] channels;
+	// Values of each stored channel
+	private float[][] data;
+	// Index into data of each channel, or -1 if it is not stored
+	private int[] indices;
+	// Timestep (s)
+	private float dt;
+
+	/**
+	 * Creates a compact profile from existing data.
+	 *
+	 * @param channels The channels that are stored
+	 * @param data The values of each channel, which must all have the same length
+	 * @param dt The timestep
+	 */
+	public CompactProfile(Channel[] channels, float[][] data, float dt) {
+		this.channels = channels;
+		this.data = data;
+		this.dt = dt;
+		indices = new int[Channel.values().length];
+		for(int i = 0; i < indices.length; i++) {
+			indices[i] = -1;
+		}
+		for(int i = 0; i < channels.length; i++) {
+			indices[channels[i].ordinal()] = i;
+		}
+	}
+
+	/**
+	 * Creates a compact profile from some channels of a time profile.
+	 *
+	 * @param profile The profile to copy from
+	 * @param channels The channels to keep
+	 */
+	public CompactProfile(TimeProfile profile, Channel... channels) {
+		this(channels, new float[channels.length][], (float)profile.getTimeStep());
+		int n = profile.size();
+		for(int i = 0; i < channels.length; i++) {
+			double[] values = profile.get(channels[i]);
+			data[i] = new float[n];
+			for(int j = 0; j < n; j++) {
+				data[i][j] = (float)values[j];
+			}
+		}
+	}
+
+	/**
+	 * Gets the number of timesteps.
+	 *
+	 * @return The length of every channel
+	 */
+	public int size() {
+		return data.length == 0 ? 0 : data[0].length;
+	}
+
+	/**
+	 * Gets the timestep.
+	 *
+	 * @return The timestep (s)
+	 */
+	public float getTimeStep() {
+		return dt;
+	}
+
+	/**
+	 * Gets the channels that are stored.
+	 *
+	 * @return The stored channels, in order
+	 */
+	public Channel[] getChannels() {
+		return channels.clone();
+	}
+
+	/**
+	 * Gets a channel.
+	 * The returned array must not be modified.
+	 *
+	 * @param channel The channel to get
+	 * @return The value of the channel at each timestep, or null if it is not stored
+	 */
+	public float[] get(Channel channel) {
+		int index = indices[channel.ordinal()];
+		return index < 0 ? null : data[index];
+	}
+
+	/**
+	 * Writes the profile in the binary format.
+	 *
+	 * @param stream The stream to write to, which is left open
+	 * @throws IOException If the stream cannot be written to
+	 */
+	public void write(OutputStream stream) throws IOException {
+		DataOutputStream out = new DataOutputStream(stream);
+		int n = size();
+		out.writeInt(MAGIC);
+		out.writeInt(VERSION);
+		out.writeInt(channels.length);
+		out.writeInt(n);
+		out.writeFloat(dt);
+		for(Channel channel:channels) {
+			out.writeByte(channel.id);
+		}
+		for(float[] values:data) {
+			for(int j = 0; j < n; j++) {
+				out.writeFloat(values[j]);
+			}
+		}
+		out.flush();
+	}
+
+	/**
+	 * Reads a profile in the binary format.
+	 *
+	 * @param stream The stream to read from, which is left open
+	 * @return The profile that was read
+	 * @throws IOException If the stream cannot be read from or is not in the binary format
+	 */
+	public static CompactProfile read(InputStream stream) throws IOException {
+		DataInputStream in = new DataInputStream(stream);
+		if(in.readInt() != MAGIC) {
+			throw new IOException("Not a compact profile");
+		}
+		int version = in.readInt();
+		if(version != VERSION) {
+			throw new IOException("Unsupported compact profile version " + version);
+		}
+		int count = in.readInt();
+		int n = in.readInt();
+		float dt = in.readFloat();
+		Channel[] all = Channel.values();
+		if(count < 0 || count > all.length || n < 0) {
+			throw new IOException("Invalid compact profile header");
+		}
+		Channel[] channels = new Channel[count];
+		boolean[] seen = new boolean[all.length];
+		for(int i = 0; i < count; i++) {
+			int id = in.readUnsignedByte();
+			Channel channel = Channel.fromId(id);
+			if(channel == null) {
+				throw new IOException("Unknown channel " + id);
+			}
+			if(seen[channel.ordinal()]) {
+				throw new IOException("Duplicate channel " + channel);
+			}
+			seen[channel.ordinal()] = true;
+			channels[i] = channel;
+		}
+		float[][] data = new float[count][];
+		for(int i = 0; i < count; i++) {
+			data[i] = readChannel(in, n);
+		}
+		return new CompactProfile(channels, data, dt);
+	}
+
+	/**
+	 * Reads the values of one channel, growing the array as they arrive
+	 * so a corrupt length runs out of data before it runs out of memory.
+	 */
+	private static float[] readChannel(DataInputStream in, int n) throws IOException {
+		float[] values = new float[Math.min(n, READ_CHUNK)];
+		for(int j = 0; j < n; j++) {
+			if(j == values.length) {
+				values = Arrays.copyOf(values, (int)Math.min(n, 2L*values.length));
+			}
+			values[j] = in.readFloat();
+		}
+		return values;
+	}
+}
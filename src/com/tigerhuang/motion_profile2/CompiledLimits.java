@@ -0,0 +1,240 @@
+package com.tigerhuang.motion_profile2;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.PriorityQueue;
+
+/**
+ * Limits resolved onto the samples of a path.
+ *
+ * Every limit interval is converted into a range of sample or interval indices once per solve,
+ * so the velocity solver only reads flat arrays instead of scanning the limits on every sweep.
+ *
+ * @author Tiger Huang
+ *
+ */
+public class CompiledLimits {
+	/**
+	 * The maximum velocity of each sample from curvature, endpoint and velocity limits (length/s)
+	 */
+	public double[] maxVel;
+	/**
+	 * The maximum acceleration of each interval between samples (length/s^2)
+	 */
+	public double[] maxAccel;
+	/**
+	 * The maximum voltage of each interval between samples (ul), or Double.MAX_VALUE if unlimited
+	 */
+	public double[] maxVoltage;
+	/**
+	 * Whether any interval has a voltage limit
+	 */
+	public boolean voltage;
+	/**
+	 * The voltage coefficients of each interval, with the left voltage being
+	 * (a-b)*(v2^2-v1^2) - c*(v1+v2)^2 + (d-e)*(v1+v2) and the right voltage being
+	 * (a+b)*(v2^2-v1^2) + c*(v1+v2)^2 + (d+e)*(v1+v2)
+	 */
+	public double[] a, b, c, d, e;
+
+	/**
+	 * Compiles limits onto segment data.
+	 *
+	 * @param splineData The samples produced by uniformLengthSegmentData
+	 * @param limits The array of limits to be applied
+	 * @param wheelbase The distance between the robot's wheels
+	 * @param v_initial The initial maximum velocity
+	 * @param v_final The final maximum velocity
+	 * @param v_max The maximum linear velocity
+	 * @param v_tau The velocity time constant for linear motion at max voltage
+	 * @param w_max The maximum angular velocity
+	 * @param w_tau The velocity time constant for angular motion at max voltage
+	 */
+	public CompiledLimits(SegmentData splineData, Limit[] limits,
+			double wheelbase,
+			double v_initial, double v_final,
+			double v_max, double v_tau,
+			double w_max, double w_tau) {
+		int l = splineData.size();
+		double[] ts = splineData.us;
+		double[] ls = splineData.ls;
+		double[] ks = splineData.ks;
+
+		// Velocity caps
+		maxVel = new double[l];
+		for(int i = 0; i < l; i++) {
+			maxVel[i] = Math.min(v_max/(1+Math.abs(ks[i])*wheelbase/2), w_max/Math.abs(ks[i]));
+		}
+		maxVel[0] = Math.min(maxVel[0], v_initial);
+		maxVel[l-1] = Math.min(maxVel[l-1], v_final);
+		sweep(ts, limits, LimitType.VELOCITY, maxVel, true);
+
+		// Acceleration and voltage caps
+		maxAccel = new double[l-1];
+		maxVoltage = new double[l-1];
+		Arrays.fill(maxAccel, 2*v_max/v_tau);
+		Arrays.fill(maxVoltage, Double.MAX_VALUE);
+		sweep(ts, limits, LimitType.ACCELERATION, maxAccel, false);
+		voltage = sweep(ts, limits, LimitType.VOLTAGE, maxVoltage, false);
+
+		// Voltage coefficients
+		a = new double[l-1];
+		b = new double[l-1];
+		c = new double[l-1];
+		d = new double[l-1];
+		e = new double[l-1];
+		for(int i = 0; i < l-1; i++) {
+			a[i] = v_tau/(2*ls[i]*v_max);
+			b[i] = w_tau*(ks[i]+ks[i+1])/(4*ls[i]*w_max);
+			c[i] = w_tau*(ks[i+1]-ks[i])/(4*ls[i]*w_max);
+			d[i] = 1/(2*v_max);
+			e[i] = wheelbase*(ks[i]+ks[i+1])/(8*v_max);
+		}
+	}
+
+	/**
+	 * Finds the samples whose bounds differ from limits compiled onto the same samples.
+	 *
+	 * @param other The previously compiled limits
+	 * @return The first and last sample that differ, or null if all bounds are the same
+	 */
+	public int[] difference(CompiledLimits other) {
+		int l = maxVel.length;
+		if(other == null || other.maxVel.length != l) {
+			return new int[] {0, l-1};
+		}
+		int first = l;
+		int last = -1;
+		for(int i = 0; i < l; i++) {
+			if(maxVel[i] != other.maxVel[i]) {
+				first = Math.min(first, i);
+				last = i;
+			}
+		}
+		for(int i = 0; i < l-1; i++) {
+			if(maxAccel[i] != other.maxAccel[i] || maxVoltage[i] != other.maxVoltage[i]
+					|| a[i] != other.a[i] || b[i] != other.b[i] || c[i] != other.c[i]
+					|| d[i] != other.d[i] || e[i] != other.e[i]) {
+				first = Math.min(first, i);
+				last = Math.max(last, i+1);
+			}
+		}
+		if(last < 0) {
+			return null;
+		}
+		return new int[] {first, last};
+	}
+
+	/**
+	 * Lowers the bounds covered by limits of one type, sweeping over the limits sorted by their start.
+	 *
+	 * @param ts The global parameter of each sample
+	 * @param limits The array of limits to be applied
+	 * @param type The type of limit to apply
+	 * @param bounds The bounds to lower, for each sample or for each interval
+	 * @param samples Whether the bounds are for each sample instead of each interval
+	 * @return Whether any bound was covered by a limit
+	 */
+	private static boolean sweep(double[] ts, Limit[] limits, LimitType type, double[] bounds, boolean samples) {
+		// Resolve the index range [start, end) of each limit
+		int count = 0;
+		final int[] starts = new int[limits.length];
+		final int[] ends = new int[limits.length];
+		final double[] values = new double[limits.length];
+		for(Limit limit:limits) {
+			if(limit.type != type) {
+				continue;
+			}
+			int start = lowerBound(ts, limit.t1);
+			int end = upperBound(ts, limit.t2);
+			if(!samples) {
+				// Intervals need both samples to be covered
+				end--;
+			}
+			if(start < end) {
+				starts[count] = start;
+				ends[count] = end;
+				values[count] = limit.limit;
+				count++;
+			}
+		}
+		if(count == 0) {
+			return false;
+		}
+		Integer[] order = new Integer[count];
+		for(int j = 0; j < count; j++) {
+			order[j] = j;
+		}
+		Arrays.sort(order, new Comparator<Integer>() {
+			@Override
+			public int compare(Integer a, Integer b) {
+				return Integer.compare(starts[a], starts[b]);
+			}
+		});
+
+		// Sweep while keeping the active limits ordered by value
+		PriorityQueue<Integer> active = new PriorityQueue<>(count, new Comparator<Integer>() {
+			@Override
+			public int compare(Integer a, Integer b) {
+				return Double.compare(values[a], values[b]);
+			}
+		});
+		int next = 0;
+		for(int i = starts[order[0]]; i < bounds.length; i++) {
+			while(next < count && starts[order[next]] <= i) {
+				active.add(order[next++]);
+			}
+			while(!active.isEmpty() && ends[active.peek()] <= i) {
+				active.poll();
+			}
+			if(active.isEmpty()) {
+				if(next >= count) {
+					break;
+				}
+				i = starts[order[next]]-1;
+				continue;
+			}
+			double value = values[active.peek()];
+			if(value < bounds[i]) {
+				bounds[i] = value;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Finds the first sample at or after a parameter.
+	 */
+	private static int lowerBound(double[] ts, double t) {
+		int lo = 0;
+		int hi = ts.length;
+		while(lo < hi) {
+			int mid = (lo+hi) >>> 1;
+			if(ts[mid] < t) {
+				lo = mid+1;
+			}
+			else {
+				hi = mid;
+			}
+		}
+		return lo;
+	}
+
+	/**
+	 * Finds the first sample after a parameter.
+	 */
+	private static int upperBound(double[] ts, double t) {
+		int lo = 0;
+		int hi = ts.length;
+		while(lo < hi) {
+			int mid = (lo+hi) >>> 1;
+			if(ts[mid] <= t) {
+				lo = mid+1;
+			}
+			else {
+				hi = mid;
+			}
+		}
+		return lo;
+	}
+}
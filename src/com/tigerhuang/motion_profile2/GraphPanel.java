@@ -17,6 +17,8 @@ import javax.swing.JPanel;
 class GraphPanel extends JPanel {
 	double[][] graphs;
 	double[] maximums;
+	// Factor applied to the graphs when displayed, so they can be shown in other units without a copy
+	double scale = 1;
 	Color[] colors;
 	double dt;
 	int cursor1;
@@ -67,9 +69,9 @@ class GraphPanel extends JPanel {
 				for(int i = 0; i < graphs[j].length-1; i++) {
 					g.drawLine(
 							(int)Math.round(1.0*width * i * dt / tmax),
-							(int)Math.round(height/2.0 - graphs[j][i] * height/2.0 / maximums[j]),
+							(int)Math.round(height/2.0 - graphs[j][i] * scale * height/2.0 / maximums[j]),
 							(int)Math.round(1.0*width * (i+1) * dt / tmax),
-							(int)Math.round(height/2.0 - graphs[j][i+1] * height/2.0 / maximums[j]));
+							(int)Math.round(height/2.0 - graphs[j][i+1] * scale * height/2.0 / maximums[j]));
 				}
 			}
 
@@ -84,4 +86,15 @@ class GraphPanel extends JPanel {
 			}
 		}
 	}
+
+	/**
+	 * Gets a value of a graph in the units it is displayed in.
+	 * 
+	 * @param graph The index of the graph
+	 * @param index The index of the value
+	 * @return The scaled value
+	 */
+	double getValue(int graph, int index) {
+		return graphs[graph][index] * scale;
+	}
 }
@@ -44,6 +44,19 @@ public class Limit {
 		endShape = new Polygon();
 	}
 
+	/**
+	 * Creates a copy of a limit, without its shapes
+	 * 
+	 * @param other the limit to copy
+	 */
+	public Limit(Limit other) {
+		this();
+		t1 = other.t1;
+		t2 = other.t2;
+		type = other.type;
+		limit = other.limit;
+	}
+
 	/**
 	 * Precomputes the shapes for more efficient drawing and manipulation.
 	 * 
@@ -57,17 +70,15 @@ public class Limit {
 	 * @param a_scale how much to scale the acceleration vector
 	 */
 	public void recalculateShapes(
-			QuinticBezier[] splines,
+			SplinePath splines,
 			double scale, double widgetSize,
 			double offx, double offy,
 			double width, double height) {
 
 		// Calculate the start point shape
-		QuinticBezier s1 = splines[(int)t1];
-		double t1r = t1%1;
-		double x1 = s1.getX(t1r);
-		double y1 = s1.getY(t1r);
-		double h1 = s1.getHeading(t1r);
+		double x1 = splines.getX(t1);
+		double y1 = splines.getY(t1);
+		double h1 = splines.getHeading(t1);
 		double startPoints[] = {
 			widgetSize/2, 0,
 			-widgetSize/2, 0,
@@ -84,11 +95,9 @@ public class Limit {
 				h1, 0);
 
 		// Calculate the end point shape
-		QuinticBezier s2 = splines[(int)t2];
-		double t2r = t2%1;
-		double x2 = s2.getX(t2r);
-		double y2 = s2.getY(t2r);
-		double h2 = s2.getHeading(t2r);
+		double x2 = splines.getX(t2);
+		double y2 = splines.getY(t2);
+		double h2 = splines.getHeading(t2);
 		double endPoints[] = {
 			widgetSize/2, 0,
 			-widgetSize/2, 0,
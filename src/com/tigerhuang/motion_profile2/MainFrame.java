@@ -8,11 +8,13 @@ import javax.swing.JMenuBar;
 import javax.swing.JMenu;
 import javax.swing.JMenuItem;
 import javax.swing.JRadioButtonMenuItem;
+import javax.swing.JCheckBoxMenuItem;
 import javax.swing.JScrollPane;
 import javax.swing.ScrollPaneConstants;
 import javax.swing.ButtonGroup;
 import javax.swing.JLabel;
 import javax.swing.JComboBox;
+import javax.swing.JCheckBox;
 import javax.swing.KeyStroke;
 import javax.swing.BoxLayout;
 import javax.swing.JSpinner;
@@ -48,6 +50,9 @@ import java.io.FileReader;
 import java.io.PrintWriter;
 import java.io.BufferedWriter;
 import java.io.FileWriter;
+import java.io.FileOutputStream;
+import java.io.BufferedOutputStream;
+import java.io.OutputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.nio.file.Path;
@@ -82,6 +87,7 @@ class MainFrame extends JFrame {
 	private JRadioButtonMenuItem inspect;
 	private JRadioButtonMenuItem editWaypoint;
 	private JRadioButtonMenuItem editLimit;
+	private JCheckBoxMenuItem exportCompactButton;
 	private JSpinner editX;
 	private JSpinner editY;
 	private JSpinner editVT;
@@ -147,6 +153,9 @@ class MainFrame extends JFrame {
 	private JSpinner settingsAdjustScale;
 	private JSpinner settingsAdjustOffset;
 	private JSpinner settingsFilterLength;
+	private JSpinner settingsJerkMax;
+	private JComboBox<SolverMode> settingsSolver;
+	private JCheckBox settingsParallel;
 	private JSpinner settingsWheelbase;
 	private JSpinner settingsWidth;
 	private JSpinner settingsLength;
@@ -277,6 +286,7 @@ class MainFrame extends JFrame {
 		JMenuItem saveAsButton = new JMenuItem("Save As");
 		JMenuItem exportButton = new JMenuItem("Export");
 		JMenuItem exportAsButton = new JMenuItem("Export As");
+		exportCompactButton = new JCheckBoxMenuItem("Export Compact Profile");
 		JMenuItem removeImageButton = new JMenuItem("Remove Image");
 		JMenuItem exitButton = new JMenuItem("Exit");
 
@@ -345,6 +355,8 @@ class MainFrame extends JFrame {
 						pathPanel.inspectU2 = Double.NaN;
 						pathPanel.waypointPath = "";
 						pathPanel.profilePath = "";
+						pathPanel.exportCompact = false;
+						exportCompactButton.setSelected(false);
 						pathPanel.imagePath = "";
 						pathPanel.rawImage = null;
 						pathPanel.brightenedImage = null;
@@ -394,6 +406,11 @@ class MainFrame extends JFrame {
 											JOptionPane.showMessageDialog(self, "Unable to find waypoints");
 										}
 										if(in != null) {
+											// Files from before the solver record was added were solved iteratively on one thread
+											pathPanel.solverMode = SolverMode.ITERATIVE;
+											pathPanel.parallel = false;
+											// Compact profiles are only exported when asked for
+											pathPanel.exportCompact = false;
 											String line = null;
 											for(;;) {
 												try {
@@ -424,6 +441,26 @@ class MainFrame extends JFrame {
 																pathPanel.adjust_offset = Double.valueOf(parts[8]);
 																pathPanel.filter_length = Integer.valueOf(parts[9]);
 															}
+															if(parts.length > 10) {
+																pathPanel.j_max = Double.valueOf(parts[10]);
+															}
+															else {
+																// Files from before the jerk limit was added have none
+																pathPanel.j_max = 0;
+															}
+															break;
+														case "solver":
+															if(parts.length > 1) {
+																try {
+																	pathPanel.solverMode = SolverMode.valueOf(parts[1]);
+																}
+																catch(IllegalArgumentException ex) {
+																	System.out.println("Unknown solver");
+																}
+															}
+															if(parts.length > 2) {
+																pathPanel.parallel = Boolean.parseBoolean(parts[2]);
+															}
 															break;
 														case "robot":
 															if(parts.length > 7) {
@@ -504,6 +541,11 @@ class MainFrame extends JFrame {
 																profileChooser.setSelectedFile(new File(pathPanel.profilePath));
 															}
 															break;
+														case "export":
+															if(parts.length > 1) {
+																pathPanel.exportCompact = Boolean.parseBoolean(parts[1]);
+															}
+															break;
 														case "waypoint":
 															if(parts.length > 6) {
 																Waypoint waypoint = new Waypoint();
@@ -557,6 +599,10 @@ class MainFrame extends JFrame {
 											settingsAdjustScale.setValue(pathPanel.adjust_scale);
 											settingsAdjustOffset.setValue(pathPanel.adjust_offset);
 											settingsFilterLength.setValue(pathPanel.filter_length);
+											settingsJerkMax.setValue(pathPanel.j_max);
+											settingsSolver.setSelectedItem(pathPanel.solverMode);
+											settingsParallel.setSelected(pathPanel.parallel);
+											exportCompactButton.setSelected(pathPanel.exportCompact);
 											settingsWheelbase.setValue(pathPanel.r_wb);
 											settingsWidth.setValue(pathPanel.r_ow);
 											settingsLength.setValue(pathPanel.r_ol);
@@ -652,10 +698,12 @@ class MainFrame extends JFrame {
 							JOptionPane.showMessageDialog(self, "Unable to write waypoints");
 						}
 						if(out != null) {
-							out.format("generation,%f,%f,%f,%f,%f,%d,%f,%f,%d\n",
+							out.format("generation,%f,%f,%f,%f,%f,%d,%f,%f,%d,%f\n",
 									pathPanel.timeStep, pathPanel.segmentLength, pathPanel.v_initial,
 									pathPanel.v_final, pathPanel.smoothing, pathPanel.max_iterations,
-									pathPanel.adjust_scale, pathPanel.adjust_offset, pathPanel.filter_length);
+									pathPanel.adjust_scale, pathPanel.adjust_offset, pathPanel.filter_length,
+									pathPanel.j_max);
+							out.format("solver,%s,%b\n", pathPanel.solverMode.name(), pathPanel.parallel);
 							out.format("robot,%f,%f,%f,%f,%f,%f,%f\n", pathPanel.r_wb,
 									pathPanel.r_ow, pathPanel.r_ol, pathPanel.v_max,
 									pathPanel.v_tau, 180/Math.PI*pathPanel.w_max, pathPanel.w_tau);
@@ -671,6 +719,7 @@ class MainFrame extends JFrame {
 									"." + File.separator + waypointPath.relativize((new File(pathPanel.imagePath).toPath())));
 							out.format("profile_path,%s\n", pathPanel.profilePath.isEmpty() ? "" :
 									"." + File.separator + waypointPath.relativize((new File(pathPanel.profilePath)).toPath()));
+							out.format("export,%b\n", pathPanel.exportCompact);
 							for(Waypoint waypoint : pathPanel.waypoints) {
 								out.format("waypoint,%f,%f,%f,%f,%f,%f\n",
 										waypoint.x, waypoint.y, 180/Math.PI*waypoint.v_t,
@@ -726,7 +775,10 @@ class MainFrame extends JFrame {
 							}
 						}
 						else {
-							if(pathPanel.timeData == null) {
+							if(pathPanel.isSolving()) {
+								JOptionPane.showMessageDialog(self, "The profile is still being solved, please export again once it is ready");
+							}
+							else if(pathPanel.timeData == null) {
 								JOptionPane.showMessageDialog(self, "No profile to export");
 							}
 							else {
@@ -737,75 +789,82 @@ class MainFrame extends JFrame {
 									baseName = baseName.substring(0, position);
 								}
 								Path path = file.toPath();
-								// Forward, normal
-								PrintWriter out = null;
-								try {
-									out = new PrintWriter(new BufferedWriter(new FileWriter(path.resolve(baseName + "_fwd_nor.csv").toString())));
-								}
-								catch(IOException ex) {
-									JOptionPane.showMessageDialog(self, "Unable to write forward normal profile");
-								}
-								if(out != null) {
-									out.format("%d, %d\n", 2, pathPanel.timeData[0].length);
-									for(int i = 0; i < pathPanel.timeData[0].length; i++) {
-										out.format("%f, %f, %f, %f, %f, %f\n",
-												pathPanel.timeData[0][i], pathPanel.timeData[1][i], pathPanel.timeData[2][i],
-												pathPanel.timeData[3][i], pathPanel.timeData[4][i], pathPanel.timeData[5][i]);
+								// Every variant is a view of the same profile, written in a single pass
+								String[] suffixes = {"_fwd_nor", "_fwd_mir", "_rev_nor", "_rev_mir"};
+								String[] names = {"forward normal", "forward mirrored", "reverse normal", "reverse mirrored"};
+								ProfileView[] views = new ProfileView[4];
+								PrintWriter[] outs = new PrintWriter[4];
+								boolean failed = false;
+								for(int j = 0; j < 4; j++) {
+									views[j] = new ProfileView(pathPanel.timeData, j%2 == 1, j >= 2);
+									try {
+										outs[j] = new PrintWriter(new BufferedWriter(new FileWriter(path.resolve(baseName + suffixes[j] + ".csv").toString())));
 									}
-									out.close();
-								}
-								// Forward, mirrored
-								out = null;
-								try {
-									out = new PrintWriter(new BufferedWriter(new FileWriter(path.resolve(baseName + "_fwd_mir.csv").toString())));
-								}
-								catch(IOException ex) {
-									JOptionPane.showMessageDialog(self, "Unable to write forward mirrored profile");
-								}
-								if(out != null) {
-									out.format("%d, %d\n", 2, pathPanel.timeData[0].length);
-									for(int i = 0; i < pathPanel.timeData[0].length; i++) {
-										out.format("%f, %f, %f, %f, %f, %f\n",
-												pathPanel.timeData[0][i], pathPanel.timeData[1][i], pathPanel.timeData[2][i],
-												-pathPanel.timeData[3][i], -pathPanel.timeData[4][i], -pathPanel.timeData[5][i]);
+									catch(IOException ex) {
+										JOptionPane.showMessageDialog(self, "Unable to write " + names[j] + " profile");
+										failed = true;
 									}
-									out.close();
-								}
-								// Reverse, normal
-								out = null;
-								try {
-									out = new PrintWriter(new BufferedWriter(new FileWriter(path.resolve(baseName + "_rev_nor.csv").toString())));
-								}
-								catch(IOException ex) {
-									JOptionPane.showMessageDialog(self, "Unable to write reverse normal profile");
-								}
-								if(out != null) {
-									out.format("%d, %d\n", 2, pathPanel.timeData[0].length);
-									for(int i = 0; i < pathPanel.timeData[0].length; i++) {
-										out.format("%f, %f, %f, %f, %f, %f\n",
-												-pathPanel.timeData[0][i], -pathPanel.timeData[1][i], -pathPanel.timeData[2][i],
-												pathPanel.timeData[3][i], pathPanel.timeData[4][i], pathPanel.timeData[5][i]);
+									if(outs[j] != null) {
+										outs[j].format("%d, %d\n", 2, pathPanel.timeData.size());
 									}
-									out.close();
 								}
-								// Reverse, mirrored
-								out = null;
-								try {
-									out = new PrintWriter(new BufferedWriter(new FileWriter(path.resolve(baseName + "_rev_mir.csv").toString())));
+								// Only the linear and angular channels are exported
+								for(int i = 0; i < pathPanel.timeData.size(); i++) {
+									for(int j = 0; j < 4; j++) {
+										if(outs[j] != null) {
+											ProfileView view = views[j];
+											outs[j].format("%f, %f, %f, %f, %f, %f\n",
+													view.get(Channel.LINEAR_POSITION, i), view.get(Channel.LINEAR_VELOCITY, i),
+													view.get(Channel.LINEAR_ACCELERATION, i), view.get(Channel.ANGULAR_POSITION, i),
+													view.get(Channel.ANGULAR_VELOCITY, i), view.get(Channel.ANGULAR_ACCELERATION, i));
+										}
+									}
 								}
-								catch(IOException ex) {
-									JOptionPane.showMessageDialog(self, "Unable to write reverse mirrored profile");
+								for(int j = 0; j < 4; j++) {
+									if(outs[j] != null) {
+										outs[j].close();
+										if(outs[j].checkError()) {
+											JOptionPane.showMessageDialog(self, "Unable to write " + names[j] + " profile");
+											failed = true;
+										}
+									}
 								}
-								if(out != null) {
-									out.format("%d, %d\n", 2, pathPanel.timeData[0].length);
-									for(int i = 0; i < pathPanel.timeData[0].length; i++) {
-										out.format("%f, %f, %f, %f, %f, %f\n",
-												-pathPanel.timeData[0][i], -pathPanel.timeData[1][i], -pathPanel.timeData[2][i],
-												-pathPanel.timeData[3][i], -pathPanel.timeData[4][i], -pathPanel.timeData[5][i]);
+								if(pathPanel.exportCompact) {
+									// Compact forward normal profile, which the other variants can be derived from by negating channels
+									CompactProfile compact = new CompactProfile(pathPanel.timeData,
+											Channel.LINEAR_POSITION, Channel.LINEAR_VELOCITY, Channel.LINEAR_ACCELERATION,
+											Channel.ANGULAR_POSITION, Channel.ANGULAR_VELOCITY, Channel.ANGULAR_ACCELERATION);
+									File compactFile = path.resolve(baseName + ".bin").toFile();
+									OutputStream stream = null;
+									boolean written = false;
+									try {
+										stream = new BufferedOutputStream(new FileOutputStream(compactFile));
+										compact.write(stream);
+										stream.close();
+										written = true;
+									}
+									catch(IOException ex) {
+										JOptionPane.showMessageDialog(self, "Unable to write compact profile");
+										failed = true;
+									}
+									finally {
+										if(!written) {
+											// Release the file and remove what was written of it
+											if(stream != null) {
+												try {
+													stream.close();
+												}
+												catch(IOException ex) {
+													// Already reported
+												}
+											}
+											compactFile.delete();
+										}
 									}
-									out.close();
 								}
-								JOptionPane.showMessageDialog(self, "Profiles exported");
+								if(!failed) {
+									JOptionPane.showMessageDialog(self, "Profiles exported");
+								}
 							}
 						}
 					}
@@ -825,6 +884,11 @@ class MainFrame extends JFrame {
 					}
 				}
 
+				else if(source == exportCompactButton) {
+					pathPanel.exportCompact = exportCompactButton.isSelected();
+					pathPanel.dirty = true;
+				}
+
 				else if(source == removeImageButton) {
 					// Removal
 					pathPanel.rawImage = null;
@@ -848,6 +912,7 @@ class MainFrame extends JFrame {
 		saveAsButton.addActionListener(listenerActions);
 		exportButton.addActionListener(listenerActions);
 		exportAsButton.addActionListener(listenerActions);
+		exportCompactButton.addActionListener(listenerActions);
 		removeImageButton.addActionListener(listenerActions);
 		exitButton.addActionListener(listenerActions);
 
@@ -956,6 +1021,7 @@ class MainFrame extends JFrame {
 		file.add(saveAsButton);
 		file.add(exportButton);
 		file.add(exportAsButton);
+		file.add(exportCompactButton);
 		file.add(removeImageButton);
 		file.add(exitButton);
 		bar.add(file);
@@ -1270,7 +1336,7 @@ class MainFrame extends JFrame {
 					}
 					waypoint.a_t = a_t;
 					waypoint.a_m = ((Double)editAM.getValue()).doubleValue();
-					pathPanel.recalculateSplines();
+					pathPanel.recalculateSplines(pathPanel.currIndex-1);
 					pathPanel.recalculateProfile();
 					pathPanel.repaint();
 					linearGraph.repaint();
@@ -1424,6 +1490,11 @@ class MainFrame extends JFrame {
 		settingsAdjustScale        = new JSpinner(new SpinnerNumberModel(pathPanel.adjust_scale, 0.0, 1.0, 0.001));
 		settingsAdjustOffset       = new JSpinner(new SpinnerNumberModel(pathPanel.adjust_offset, 0.9, 1.0, 0.001));
 		settingsFilterLength       = new JSpinner(new SpinnerNumberModel(pathPanel.filter_length, 0, null, 1));
+		settingsJerkMax            = new JSpinner(new SpinnerNumberModel(pathPanel.j_max, 0.0, null, 1.0));
+		settingsSolver             = new JComboBox<>(SolverMode.values());
+		settingsSolver.setSelectedItem(pathPanel.solverMode);
+		settingsParallel           = new JCheckBox();
+		settingsParallel.setSelected(pathPanel.parallel);
 		settingsWheelbase          = new JSpinner(new SpinnerNumberModel(pathPanel.r_wb, 0.1, null, 0.1));
 		settingsWidth              = new JSpinner(new SpinnerNumberModel(pathPanel.r_ow, 0.1, null, 0.1));
 		settingsLength             = new JSpinner(new SpinnerNumberModel(pathPanel.r_ol, 0.1, null, 0.1));
@@ -1476,6 +1547,12 @@ class MainFrame extends JFrame {
 		c.gridy++;
 		panel.add(new JLabel("Filter Length (ul)"), c);
 		c.gridy++;
+		panel.add(new JLabel("Max Jerk (len/s\u00B3)"), c);
+		c.gridy++;
+		panel.add(new JLabel("Solver"), c);
+		c.gridy++;
+		panel.add(new JLabel("Parallel"), c);
+		c.gridy++;
 		c.gridwidth = 2;
 		label = new JLabel("Robot Parameters");
 		label.setForeground(PathPanel.PURPLE);
@@ -1570,6 +1647,12 @@ class MainFrame extends JFrame {
 		panel.add(settingsAdjustOffset, c);
 		c.gridy++;
 		panel.add(settingsFilterLength, c);
+		c.gridy++;
+		panel.add(settingsJerkMax, c);
+		c.gridy++;
+		panel.add(settingsSolver, c);
+		c.gridy++;
+		panel.add(settingsParallel, c);
 		c.gridy+=2;
 		panel.add(settingsWheelbase, c);
 		c.gridy++;
@@ -1651,6 +1734,15 @@ class MainFrame extends JFrame {
 				if(e.getSource() == settingsFilterLength) {
 					pathPanel.filter_length = ((Integer)settingsFilterLength.getValue()).intValue();
 				}
+				if(e.getSource() == settingsJerkMax) {
+					pathPanel.j_max = ((Double)settingsJerkMax.getValue()).doubleValue();
+				}
+				if(e.getSource() == settingsSolver) {
+					pathPanel.solverMode = (SolverMode)settingsSolver.getSelectedItem();
+				}
+				if(e.getSource() == settingsParallel) {
+					pathPanel.parallel = settingsParallel.isSelected();
+				}
 				if(e.getSource() == settingsWheelbase) {
 					pathPanel.r_wb = ((Double)settingsWheelbase.getValue()).doubleValue();
 				}
@@ -1721,8 +1813,19 @@ class MainFrame extends JFrame {
 				if(e.getSource() == settingsWidgetSize) {
 					pathPanel.widgetSize = ((Double)settingsWidgetSize.getValue()).doubleValue();
 				}
-				pathPanel.recalculateSplines();
-				pathPanel.recalculateProfile();
+				if(source == settingsTimeStep || source == settingsFilterLength) {
+					// Only the resampling depends on these
+					pathPanel.resampleProfile();
+				}
+				else {
+					if(source == settingsSegmentLength) {
+						pathPanel.recalculateSegmentData();
+					}
+					else if(source != settingsSolver && source != settingsParallel) {
+						pathPanel.recalculateSplines();
+					}
+					pathPanel.recalculateProfile();
+				}
 				updateInspect();
 				pathPanel.repaint();
 				linearGraph.repaint();
@@ -1741,6 +1844,19 @@ class MainFrame extends JFrame {
 		settingsAdjustScale.addChangeListener(listener);
 		settingsAdjustOffset.addChangeListener(listener);
 		settingsFilterLength.addChangeListener(listener);
+		settingsJerkMax.addChangeListener(listener);
+		settingsSolver.addActionListener(new ActionListener() {
+			@Override
+			public void actionPerformed(ActionEvent e) {
+				listener.stateChanged(new ChangeEvent(settingsSolver));
+			}
+		});
+		settingsParallel.addActionListener(new ActionListener() {
+			@Override
+			public void actionPerformed(ActionEvent e) {
+				listener.stateChanged(new ChangeEvent(settingsParallel));
+			}
+		});
 		settingsWheelbase.addChangeListener(listener);
 		settingsWheelbase.addChangeListener(listener);
 		settingsWheelbase.addChangeListener(listener);
@@ -1779,6 +1895,7 @@ class MainFrame extends JFrame {
 		angularGraph.colors = new Color[]{Color.BLUE, Color.RED, Color.GREEN.darker()};
 		angularGraph.maximums = new double[]{0, 180/Math.PI*pathPanel.w_max, 180/Math.PI*pathPanel.w_max/pathPanel.w_tau};
 		angularGraph.dt = pathPanel.timeStep;
+		angularGraph.scale = 180/Math.PI;
 		sideGraph = new GraphPanel();
 		sideGraph.colors = new Color[]{Color.BLUE, Color.RED};
 		sideGraph.maximums = new double[]{1.0, 1.0};
@@ -2185,6 +2302,36 @@ class MainFrame extends JFrame {
 		status1.setText(ready ? " <Ready> " : " <Busy> ");
 	}
 
+	/**
+	 * Shows the progress of the velocity solver in the ready indicator
+	 */
+	public void setProgress(int iteration, double residual, int changed) {
+		status1.setText(String.format(" <Solving %d: %.2g, %d> ", iteration, residual, changed));
+	}
+
+	/**
+	 * Finds the timestep closest to a point on the path
+	 * 
+	 * @param u The global parameter of the point
+	 * @return The index of the timestep, or -1 if there is no profile or it is still being solved
+	 */
+	private int inspectIndex(double u) {
+		if(pathPanel.profile == null || pathPanel.timeData == null || pathPanel.isSolving()) {
+			return -1;
+		}
+		double time = pathPanel.profile.timeAt(pathPanel.splines.getLength(u));
+		// The boxcar filter averages each timestep with the ones before it, which delays the channels by half its length
+		int index = (int)Math.round(time/pathPanel.timeStep + pathPanel.filter_length/2.0);
+		return Math.min(index, pathPanel.timeData.size()-1);
+	}
+
+	/**
+	 * Formats an inspect value, or a placeholder if it is unknown
+	 */
+	private static String formatValue(String format, double value) {
+		return Double.isNaN(value) ? "--" : String.format(format, value);
+	}
+
 	/**
 	 * Updates the inspect panel
 	 */
@@ -2206,60 +2353,40 @@ class MainFrame extends JFrame {
 			double rightVol2Value = Double.NaN;
 
 			// Path exists
-			if(pathPanel.times.length > 0) {
+			if(pathPanel.splines != null) {
 				// Find location closest to spline
-				double min_distance = Double.MAX_VALUE;
-				int min_index = 0;
-				for(int i = 0; i < pathPanel.times.length; i++) {
-					double distance = Math.hypot(pathPanel.inspectX2 - pathPanel.timePoints[i][0], pathPanel.inspectY2 - pathPanel.timePoints[i][1]);
-					if(distance < min_distance) {
-						min_index = i;
-						min_distance = distance;
-					}
-				}
-				pathPanel.inspectU2 = pathPanel.times[min_index];
-				pathX2Value = pathPanel.timePoints[min_index][0];
-				pathY2Value = pathPanel.timePoints[min_index][1];
+				double u = pathPanel.splines.project(pathPanel.inspectX2, pathPanel.inspectY2);
+				pathPanel.inspectU2 = u;
+				pathX2Value = pathPanel.splines.getX(u);
+				pathY2Value = pathPanel.splines.getY(u);
 				pathX2.setText(String.format("%.4g", pathX2Value));
 				pathY2.setText(String.format("%.4g", pathY2Value));
 
 				// Find time paramaterized point closest to location
-				double s = 0;
-				for(int i = 0; i < min_index; i++) {
-					s += pathPanel.splineData[1][i];
-				}
-				min_index = 0;
-				double min_diff = Double.MAX_VALUE;
-				for(int i = 0; i < pathPanel.timeData[0].length; i++) {
-					double diff = Math.abs(s - pathPanel.timeData[0][i]);
-					if(diff < min_diff) {
-						min_diff = diff;
-						min_index = i;
-					}
-				}
+				int min_index = inspectIndex(u);
 				if(linearGraph != null) {
 					linearGraph.cursor2 = min_index;
 					angularGraph.cursor2 = min_index;
 					sideGraph.cursor2 = min_index;
 				}
-				pathTime2Value = min_index*pathPanel.timeStep;
-				linPos2Value = linearGraph.graphs[0][min_index];
-				linVel2Value = linearGraph.graphs[1][min_index];
-				linAcc2Value = linearGraph.graphs[2][min_index];
-				angPos2Value = angularGraph.graphs[0][min_index];
-				angVel2Value = angularGraph.graphs[1][min_index];
-				angAcc2Value = angularGraph.graphs[2][min_index];
-				leftVol2Value = sideGraph.graphs[0][min_index];
-				rightVol2Value = sideGraph.graphs[1][min_index];
-				pathTime2.setText(String.format("%.2f", pathTime2Value));
-				linPos2.setText(String.format("%.4g", linPos2Value));
-				linVel2.setText(String.format("%.4g", linVel2Value));
-				linAcc2.setText(String.format("%.4g", linAcc2Value));
-				angPos2.setText(String.format("%.4g", angPos2Value));
-				angVel2.setText(String.format("%.4g", angVel2Value));
-				angAcc2.setText(String.format("%.4g", angAcc2Value));
-				leftVol2.setText(String.format("%.4g", leftVol2Value));
-				rightVol2.setText(String.format("%.4g", rightVol2Value));
+				pathTime2Value = min_index < 0 ? Double.NaN : min_index*pathPanel.timeStep;
+				linPos2Value = min_index < 0 ? Double.NaN : linearGraph.getValue(0, min_index);
+				linVel2Value = min_index < 0 ? Double.NaN : linearGraph.getValue(1, min_index);
+				linAcc2Value = min_index < 0 ? Double.NaN : linearGraph.getValue(2, min_index);
+				angPos2Value = min_index < 0 ? Double.NaN : angularGraph.getValue(0, min_index);
+				angVel2Value = min_index < 0 ? Double.NaN : angularGraph.getValue(1, min_index);
+				angAcc2Value = min_index < 0 ? Double.NaN : angularGraph.getValue(2, min_index);
+				leftVol2Value = min_index < 0 ? Double.NaN : sideGraph.getValue(0, min_index);
+				rightVol2Value = min_index < 0 ? Double.NaN : sideGraph.getValue(1, min_index);
+				pathTime2.setText(formatValue("%.2f", pathTime2Value));
+				linPos2.setText(formatValue("%.4g", linPos2Value));
+				linVel2.setText(formatValue("%.4g", linVel2Value));
+				linAcc2.setText(formatValue("%.4g", linAcc2Value));
+				angPos2.setText(formatValue("%.4g", angPos2Value));
+				angVel2.setText(formatValue("%.4g", angVel2Value));
+				angAcc2.setText(formatValue("%.4g", angAcc2Value));
+				leftVol2.setText(formatValue("%.4g", leftVol2Value));
+				rightVol2.setText(formatValue("%.4g", rightVol2Value));
 			}
 
 			// Path does not exist
@@ -2292,20 +2419,12 @@ class MainFrame extends JFrame {
 				freeHypot3.setText(String.format("%.4g", Math.hypot(pathPanel.inspectX2 - pathPanel.inspectX1, pathPanel.inspectY2 - pathPanel.inspectY1)));
 
 				// Path exists
-				if(pathPanel.times.length > 0) {
+				if(pathPanel.splines != null) {
 					// Find location closest to spline
-					double min_distance = Double.MAX_VALUE;
-					int min_index = 0;
-					for(int i = 0; i < pathPanel.times.length; i++) {
-						double distance = Math.hypot(pathPanel.inspectX1 - pathPanel.timePoints[i][0], pathPanel.inspectY1 - pathPanel.timePoints[i][1]);
-						if(distance < min_distance) {
-							min_index = i;
-							min_distance = distance;
-						}
-					}
-					pathPanel.inspectU1 = pathPanel.times[min_index];
-					double pathX1Value = pathPanel.timePoints[min_index][0];
-					double pathY1Value = pathPanel.timePoints[min_index][1];
+					double u = pathPanel.splines.project(pathPanel.inspectX1, pathPanel.inspectY1);
+					pathPanel.inspectU1 = u;
+					double pathX1Value = pathPanel.splines.getX(u);
+					double pathY1Value = pathPanel.splines.getY(u);
 					pathX1.setText(String.format("%.4g", pathX1Value));
 					pathY1.setText(String.format("%.4g", pathY1Value));
 					pathX3.setText(String.format("%.4g", pathX2Value - pathX1Value));
@@ -2313,51 +2432,39 @@ class MainFrame extends JFrame {
 					pathHypot3.setText(String.format("%.4g", Math.hypot(pathX2Value - pathX1Value, pathY2Value - pathY1Value)));
 
 					// Find time paramaterized point closest to location
-					double s = 0;
-					for(int i = 0; i < min_index; i++) {
-						s += pathPanel.splineData[1][i];
-					}
-					min_index = 0;
-					double min_diff = Double.MAX_VALUE;
-					for(int i = 0; i < pathPanel.timeData[0].length; i++) {
-						double diff = Math.abs(s - pathPanel.timeData[0][i]);
-						if(diff < min_diff) {
-							min_diff = diff;
-							min_index = i;
-						}
-					}
+					int min_index = inspectIndex(u);
 					if(linearGraph != null) {
 						linearGraph.cursor1 = min_index;
 						angularGraph.cursor1 = min_index;
 						sideGraph.cursor1 = min_index;
 					}
-					double pathTime1Value = min_index*pathPanel.timeStep;
-					double linPos1Value = linearGraph.graphs[0][min_index];
-					double linVel1Value = linearGraph.graphs[1][min_index];
-					double linAcc1Value = linearGraph.graphs[2][min_index];
-					double angPos1Value = angularGraph.graphs[0][min_index];
-					double angVel1Value = angularGraph.graphs[1][min_index];
-					double angAcc1Value = angularGraph.graphs[2][min_index];
-					double leftVol1Value = sideGraph.graphs[0][min_index];
-					double rightVol1Value = sideGraph.graphs[1][min_index];
-					pathTime1.setText(String.format("%.2f", pathTime1Value));
-					linPos1.setText(String.format("%.4g", linPos1Value));
-					linVel1.setText(String.format("%.4g", linVel1Value));
-					linAcc1.setText(String.format("%.4g", linAcc1Value));
-					angPos1.setText(String.format("%.4g", angPos1Value));
-					angVel1.setText(String.format("%.4g", angVel1Value));
-					angAcc1.setText(String.format("%.4g", angAcc1Value));
-					leftVol1.setText(String.format("%.4g", leftVol1Value));
-					rightVol1.setText(String.format("%.4g", rightVol1Value));
-					pathTime3.setText(String.format("%.2f", pathTime2Value - pathTime1Value));
-					linPos3.setText(String.format("%.4g", linPos2Value - linPos1Value));
-					linVel3.setText(String.format("%.4g", linVel2Value - linVel1Value));
-					linAcc3.setText(String.format("%.4g", linAcc2Value - linAcc1Value));
-					angPos3.setText(String.format("%.4g", angPos2Value - angPos1Value));
-					angVel3.setText(String.format("%.4g", angVel2Value - angVel1Value));
-					angAcc3.setText(String.format("%.4g", angAcc2Value - angAcc1Value));
-					leftVol3.setText(String.format("%.4g", leftVol2Value - leftVol1Value));
-					rightVol3.setText(String.format("%.4g", rightVol2Value - rightVol1Value));
+					double pathTime1Value = min_index < 0 ? Double.NaN : min_index*pathPanel.timeStep;
+					double linPos1Value = min_index < 0 ? Double.NaN : linearGraph.getValue(0, min_index);
+					double linVel1Value = min_index < 0 ? Double.NaN : linearGraph.getValue(1, min_index);
+					double linAcc1Value = min_index < 0 ? Double.NaN : linearGraph.getValue(2, min_index);
+					double angPos1Value = min_index < 0 ? Double.NaN : angularGraph.getValue(0, min_index);
+					double angVel1Value = min_index < 0 ? Double.NaN : angularGraph.getValue(1, min_index);
+					double angAcc1Value = min_index < 0 ? Double.NaN : angularGraph.getValue(2, min_index);
+					double leftVol1Value = min_index < 0 ? Double.NaN : sideGraph.getValue(0, min_index);
+					double rightVol1Value = min_index < 0 ? Double.NaN : sideGraph.getValue(1, min_index);
+					pathTime1.setText(formatValue("%.2f", pathTime1Value));
+					linPos1.setText(formatValue("%.4g", linPos1Value));
+					linVel1.setText(formatValue("%.4g", linVel1Value));
+					linAcc1.setText(formatValue("%.4g", linAcc1Value));
+					angPos1.setText(formatValue("%.4g", angPos1Value));
+					angVel1.setText(formatValue("%.4g", angVel1Value));
+					angAcc1.setText(formatValue("%.4g", angAcc1Value));
+					leftVol1.setText(formatValue("%.4g", leftVol1Value));
+					rightVol1.setText(formatValue("%.4g", rightVol1Value));
+					pathTime3.setText(formatValue("%.2f", pathTime2Value - pathTime1Value));
+					linPos3.setText(formatValue("%.4g", linPos2Value - linPos1Value));
+					linVel3.setText(formatValue("%.4g", linVel2Value - linVel1Value));
+					linAcc3.setText(formatValue("%.4g", linAcc2Value - linAcc1Value));
+					angPos3.setText(formatValue("%.4g", angPos2Value - angPos1Value));
+					angVel3.setText(formatValue("%.4g", angVel2Value - angVel1Value));
+					angAcc3.setText(formatValue("%.4g", angAcc2Value - angAcc1Value));
+					leftVol3.setText(formatValue("%.4g", leftVol2Value - leftVol1Value));
+					rightVol3.setText(formatValue("%.4g", rightVol2Value - rightVol1Value));
 				}
 
 				// Path does not exist
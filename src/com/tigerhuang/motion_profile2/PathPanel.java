@@ -1,5 +1,6 @@
 package com.tigerhuang.motion_profile2;
 
+import javax.swing.JOptionPane;
 import javax.swing.JPanel;
 
 import java.awt.Graphics;
@@ -63,6 +64,8 @@ class PathPanel extends JPanel implements MouseListener, MouseMotionListener {
 	double adjust_scale = 0.01;
 	double adjust_offset = 0.99;
 	int filter_length = 10;
+	SolverMode solverMode = SolverMode.ITERATIVE;
+	boolean parallel = false;
 	// Robot parameters
 	double r_wb = 2.1;
 	double r_ow = 2.7;
@@ -71,6 +74,7 @@ class PathPanel extends JPanel implements MouseListener, MouseMotionListener {
 	double v_tau = 0.25;
 	double w_max = v_max*2/r_wb;
 	double w_tau = v_tau;
+	double j_max = 0;
 	// Image settings
 	double imageScale = 20;
 	double imageBrightness = 0.5;
@@ -93,6 +97,7 @@ class PathPanel extends JPanel implements MouseListener, MouseMotionListener {
 	String waypointPath = "";
 	String imagePath = "";
 	String profilePath = "";
+	boolean exportCompact = false;
 	boolean dirty = false;
 	BufferedImage rawImage;
 	BufferedImage brightenedImage;
@@ -101,12 +106,20 @@ class PathPanel extends JPanel implements MouseListener, MouseMotionListener {
 
 	// Waypoints
 	ArrayList<Waypoint> waypoints;
-	QuinticBezier splines[];
+	SplinePath splines;
 	double splinePoints[][];
-	double splineData[][];
-	double timeData[][];
-	double times[];
-	double timePoints[][];
+	double splineHeadings[][];
+	Profile profile;
+	TimeProfile timeData;
+	private boolean progressShown = false;
+	// Solves profiles off the event dispatch thread
+	private ProfileWorker worker;
+	// Path changes not yet sent to the worker
+	private int changedSpline = ProfileWorker.NO_CHANGE;
+	private boolean rebuildSegmentData = false;
+	// Generations of the newest request sent to the worker and of the result being shown
+	private int submittedGeneration = 0;
+	private int appliedGeneration = 0;
 	private Waypoint currWaypoint;
 	private WaypointShape currWaypointShape;
 
@@ -135,8 +148,8 @@ class PathPanel extends JPanel implements MouseListener, MouseMotionListener {
 		addMouseMotionListener(this);
 		waypoints = new ArrayList<>();
 		limits = new ArrayList<>();
-		times = new double[0];
 		currIndex = 0;
+		worker = new ProfileWorker(this);
 	}
 
 	/**
@@ -215,7 +228,7 @@ class PathPanel extends JPanel implements MouseListener, MouseMotionListener {
 			}
 			double[] points = new double[splinePoints[0].length];
 			g.setColor(Color.MAGENTA);
-			for(int i = 0; i < splines.length; i++) {
+			for(int i = 0; i < splines.getSegmentCount(); i++) {
 				transform.transform(splinePoints[i], 0, points, 0, displaySegments+1);
 				for(int j = 0; j < displaySegments; j++) {
 					if(limit != null && limit.t1 <= i+1.0*j/displaySegments && limit.t2 >= i+(j+1.0)/displaySegments) {
@@ -231,10 +244,9 @@ class PathPanel extends JPanel implements MouseListener, MouseMotionListener {
 			// Left wheel spline
 			g.setColor(PURPLE);
 			g.setStroke(THIN);
-			for(int i = 0; i < splines.length; i++) {
+			for(int i = 0; i < splines.getSegmentCount(); i++) {
 				for(int j = 0; j < displaySegments+1; j++) {
-					double t = 1.0*j/displaySegments;
-					double h = splines[i].getHeading(t);
+					double h = splineHeadings[i][j];
 					points[j*2] = splinePoints[i][j*2] - r_wb/2 * Math.cos(h);
 					points[j*2+1] = splinePoints[i][j*2+1] - r_wb/2 * Math.sin(h);
 				}
@@ -245,10 +257,9 @@ class PathPanel extends JPanel implements MouseListener, MouseMotionListener {
 			}
 
 			// Right wheel spline
-			for(int i = 0; i < splines.length; i++) {
+			for(int i = 0; i < splines.getSegmentCount(); i++) {
 				for(int j = 0; j < displaySegments+1; j++) {
-					double t = 1.0*j/displaySegments;
-					double h = splines[i].getHeading(t);
+					double h = splineHeadings[i][j];
 					points[j*2] = splinePoints[i][j*2] + r_wb/2 * Math.cos(h);
 					points[j*2+1] = splinePoints[i][j*2+1] + r_wb/2 * Math.sin(h);
 				}
@@ -260,10 +271,9 @@ class PathPanel extends JPanel implements MouseListener, MouseMotionListener {
 
 			// Left spline
 			g.setColor(Color.GREEN.darker());
-			for(int i = 0; i < splines.length; i++) {
+			for(int i = 0; i < splines.getSegmentCount(); i++) {
 				for(int j = 0; j < displaySegments+1; j++) {
-					double t = 1.0*j/displaySegments;
-					double h = splines[i].getHeading(t);
+					double h = splineHeadings[i][j];
 					points[j*2] = splinePoints[i][j*2] - r_ow/2 * Math.cos(h);
 					points[j*2+1] = splinePoints[i][j*2+1] - r_ow/2 * Math.sin(h);
 				}
@@ -274,10 +284,9 @@ class PathPanel extends JPanel implements MouseListener, MouseMotionListener {
 			}
 
 			// Right spline
-			for(int i = 0; i < splines.length; i++) {
+			for(int i = 0; i < splines.getSegmentCount(); i++) {
 				for(int j = 0; j < displaySegments+1; j++) {
-					double t = 1.0*j/displaySegments;
-					double h = splines[i].getHeading(t);
+					double h = splineHeadings[i][j];
 					points[j*2] = splinePoints[i][j*2] + r_ow/2 * Math.cos(h);
 					points[j*2+1] = splinePoints[i][j*2+1] + r_ow/2 * Math.sin(h);
 				}
@@ -289,9 +298,9 @@ class PathPanel extends JPanel implements MouseListener, MouseMotionListener {
 
 			// Start cap
 			double[] points2 = new double[8];
-			double x = splines[0].getX(0);
-			double y = splines[0].getY(0);
-			double h = splines[0].getHeading(0);
+			double x = splines.getX(0);
+			double y = splines.getY(0);
+			double h = splines.getHeading(0);
 			points2[0] = x + r_ow/2 * Math.cos(h);
 			points2[1] = y + r_ow/2 * Math.sin(h);
 			points2[2] = x + r_ow/2 * Math.cos(h) + r_ol/2 * Math.sin(h);
@@ -306,9 +315,9 @@ class PathPanel extends JPanel implements MouseListener, MouseMotionListener {
 			}
 
 			// End cap
-			x = splines[splines.length-1].getX(1);
-			y = splines[splines.length-1].getY(1);
-			h = splines[splines.length-1].getHeading(1);
+			x = splines.getX(splines.getSegmentCount());
+			y = splines.getY(splines.getSegmentCount());
+			h = splines.getHeading(splines.getSegmentCount());
 			points2[0] = x + r_ow/2 * Math.cos(h);
 			points2[1] = y + r_ow/2 * Math.sin(h);
 			points2[2] = x + r_ow/2 * Math.cos(h) - r_ol/2 * Math.sin(h);
@@ -335,9 +344,9 @@ class PathPanel extends JPanel implements MouseListener, MouseMotionListener {
 				g.drawLine((int)Math.round(centerx), (int)Math.round(centery - widgetSize),
 						(int)Math.round(centerx), (int)Math.round(centery + widgetSize));
 				if(!Double.isNaN(inspectU1)) {
-					double x = splines[(int)inspectU1].getX(inspectU1%1);
-					double y = splines[(int)inspectU1].getY(inspectU1%1);
-					double h = splines[(int)inspectU1].getHeading(inspectU1%1);
+					double x = splines.getX(inspectU1);
+					double y = splines.getY(inspectU1);
+					double h = splines.getHeading(inspectU1);
 					g.drawLine((int)Math.round(width/2.0 + scale * (x+offx+r_wb/2*Math.cos(h))),
 							(int)Math.round(height/2.0 - scale * (y+offy+r_wb/2*Math.sin(h))),
 							(int)Math.round(width/2.0 + scale * (x+offx-r_wb/2*Math.cos(h))),
@@ -354,9 +363,9 @@ class PathPanel extends JPanel implements MouseListener, MouseMotionListener {
 				g.drawLine((int)Math.round(centerx), (int)Math.round(centery - widgetSize),
 						(int)Math.round(centerx), (int)Math.round(centery + widgetSize));
 				if(!Double.isNaN(inspectU2)) {
-					double x = splines[(int)inspectU2].getX(inspectU2%1);
-					double y = splines[(int)inspectU2].getY(inspectU2%1);
-					double h = splines[(int)inspectU2].getHeading(inspectU2%1);
+					double x = splines.getX(inspectU2);
+					double y = splines.getY(inspectU2);
+					double h = splines.getHeading(inspectU2);
 					g.drawLine((int)Math.round(width/2.0 + scale * (x+offx+r_wb/2*Math.cos(h))),
 							(int)Math.round(height/2.0 - scale * (y+offy+r_wb/2*Math.sin(h))),
 							(int)Math.round(width/2.0 + scale * (x+offx-r_wb/2*Math.cos(h))),
@@ -402,16 +411,7 @@ class PathPanel extends JPanel implements MouseListener, MouseMotionListener {
 		double posy = -(mousey - getHeight()/2.0)/scale - offy;
 		if(currLimit != null && currLimit != firstLimit) {
 			// Find location closest to spline
-			double min_distance = Double.MAX_VALUE;
-			int min_index = 0;
-			for(int i = 0; i < times.length; i++) {
-				double distance = Math.hypot(posx - timePoints[i][0], posy - timePoints[i][1]);
-				if(distance < min_distance) {
-					min_index = i;
-					min_distance = distance;
-				}
-			}
-			double min_time = times[min_index];
+			double min_time = splines.project(posx, posy);
 
 			if(currLimitShape == LimitShape.START) {
 				if(min_time <= currLimit.t2) {
@@ -420,7 +420,7 @@ class PathPanel extends JPanel implements MouseListener, MouseMotionListener {
 			}
 			else if(currLimitShape == LimitShape.END) {
 				if(min_time >= currLimit.t1) {
-					currLimit.t2 = times[min_index];
+					currLimit.t2 = min_time;
 				}
 			}
 			mainFrame.updateEditPanel();
@@ -450,138 +450,212 @@ class PathPanel extends JPanel implements MouseListener, MouseMotionListener {
 			splines = SplineGenerator.splinesFromWaypoints(waypoints.toArray(new Waypoint[0]));
 
 			// Generate display points
-			splinePoints = new double[splines.length][];
-			for(int i = 0; i < splines.length; i++) {
-				double dt = 1.0/displaySegments;
+			splinePoints = new double[splines.getSegmentCount()][];
+			splineHeadings = new double[splines.getSegmentCount()][];
+			for(int i = 0; i < splines.getSegmentCount(); i++) {
 				splinePoints[i] = new double[(displaySegments + 1) * 2];
-				for(int j = 0; j <= displaySegments; j++) {
-					double t = j * dt;
-					splinePoints[i][j*2] = splines[i].getX(t);
-					splinePoints[i][j*2 + 1] = splines[i].getY(t);
-				}
+				splineHeadings[i] = new double[displaySegments + 1];
+				splines.getSegment(i).sampleUniform(displaySegments, splinePoints[i], splineHeadings[i], null);
 			}
 
 			// Generate spline data
-			splineData = SplineGenerator.uniformLengthSegmentData(splines, segmentLength);
-			times = new double[splineData[2].length];
-			System.arraycopy(splineData[0], 0, times, 0, times.length);
-			timePoints = new double[times.length][2];
-			for(int i = 0; i < times.length; i++) {
-				QuinticBezier s = splines[(int)times[i]];
-				double t = times[i]%1;
-				timePoints[i][0] = s.getX(t);
-				timePoints[i][1] = s.getY(t);
-			}
+			recalculateSegmentData();
 		}
 		else {
 			splines = null;
-			splineData = null;
+			profile = null;
 			timeData = null;
-			times = new double[0];
-			timePoints = null;
 		}
 	}
 
+	/**
+	 * Spline rebuild handler for when a single waypoint has been edited
+	 * 
+	 * Only the splines next to the waypoint are rebuilt and tessellated,
+	 * and the segment data before them is kept.
+	 */
+	public void recalculateSplines(int index) {
+		if(splines == null || index < 0 ||
+				splines.getSegmentCount() != waypoints.size()-1 ||
+				splinePoints[0].length != (displaySegments + 1) * 2) {
+			recalculateSplines();
+			return;
+		}
+
+		// Generate splines
+		splines = SplineGenerator.updateSplines(splines, waypoints.toArray(new Waypoint[0]), index);
+
+		// Generate display points
+		for(int i = Math.max(index-1, 0); i <= index && i < splines.getSegmentCount(); i++) {
+			splines.getSegment(i).sampleUniform(displaySegments, splinePoints[i], splineHeadings[i], null);
+		}
+
+		// Spline data is regenerated from the first changed spline by the worker
+		changedSpline = Math.min(changedSpline, Math.max(index-1, 0));
+	}
+
+	/**
+	 * Segment data rebuild handler
+	 * 
+	 * The worker reuses the arc length tables of the current splines.
+	 */
+	public void recalculateSegmentData() {
+		rebuildSegmentData = true;
+	}
+
 	/**
 	 * Profile rebuild handler
+	 * 
+	 * Sends a snapshot of the path, limits and settings to the worker, which solves it in the background
+	 * and calls applyProfile when done. The graphs keep showing the last profile until then.
 	 */
 	public void recalculateProfile() {
 		dirty = true;
-		if(splineData != null) {
-			SplineGenerator.generateVelocityProfile(splineData, splines, limits.toArray(new Limit[0]),
-					r_wb, smoothing, max_iterations, adjust_scale, adjust_offset,
-					v_initial, v_final, v_max, v_tau, w_max, w_tau);
-			timeData = SplineGenerator.generateTimeParameterizedProfile(splineData, splines,
-					timeStep, r_wb, filter_length, v_max, v_tau, w_max, w_tau);
+		if(splines != null) {
+			// Build the arc length tables here, so the worker and its pool threads only read them
+			splines.getLength();
+		}
+		ProfileWorker.Request request = new ProfileWorker.Request();
+		request.splines = splines;
+		request.changed = changedSpline;
+		request.rebuild = rebuildSegmentData;
+		request.limits = new Limit[limits.size()];
+		for(int i = 0; i < request.limits.length; i++) {
+			request.limits[i] = new Limit(limits.get(i));
+		}
+		request.segmentLength = segmentLength;
+		request.solverMode = solverMode;
+		request.parallel = parallel;
+		request.wheelbase = r_wb;
+		request.smoothing = smoothing;
+		request.max_iterations = max_iterations;
+		request.adjust_scale = adjust_scale;
+		request.adjust_offset = adjust_offset;
+		request.v_initial = v_initial;
+		request.v_final = v_final;
+		request.v_max = v_max;
+		request.v_tau = v_tau;
+		request.w_max = w_max;
+		request.w_tau = w_tau;
+		request.j_max = j_max;
+		changedSpline = ProfileWorker.NO_CHANGE;
+		rebuildSegmentData = false;
+		submittedGeneration = worker.submit(request);
+	}
+
+	/**
+	 * Checks whether the worker has yet to publish the result of the newest edit,
+	 * in which case the profile being shown is out of date
+	 * 
+	 * @return Whether a solve is pending
+	 */
+	public boolean isSolving() {
+		return appliedGeneration != submittedGeneration;
+	}
+
+	/**
+	 * Shows the progress of the newest solve, called on the event dispatch thread by the worker
+	 */
+	void showProgress(int iteration, double residual, int changed) {
+		mainFrame.setProgress(iteration, residual, changed);
+		progressShown = true;
+	}
+
+	/**
+	 * Shows the result of the newest solve, called on the event dispatch thread by the worker
+	 * 
+	 * @param profile The solved profile, or null if there is no path
+	 * @param generation The generation of the request that was solved
+	 */
+	void applyProfile(Profile profile, int generation) {
+		appliedGeneration = generation;
+		if(progressShown) {
+			mainFrame.setReady(true);
+			progressShown = false;
+		}
+		this.profile = profile;
+		updateTimeData();
+		mainFrame.updateInspect();
+		mainFrame.linearGraph.repaint();
+		mainFrame.angularGraph.repaint();
+		mainFrame.sideGraph.repaint();
+		repaint();
+	}
+
+	/**
+	 * Reports a solve that failed, called on the event dispatch thread by the worker
+	 * 
+	 * The profile is cleared rather than left showing an older path.
+	 * 
+	 * @param e The exception thrown by the solve
+	 * @param generation The generation of the request that failed
+	 */
+	void failProfile(RuntimeException e, int generation) {
+		applyProfile(null, generation);
+		mainFrame.setReady(true);
+		String message = e.getMessage() == null ? e.getClass().getSimpleName() : e.getMessage();
+		JOptionPane.showMessageDialog(mainFrame, "Unable to solve profile: " + message);
+	}
+
+	/**
+	 * Profile resample handler
+	 * 
+	 * Only the timestep based outputs are rebuilt, from the velocities of the last solve.
+	 */
+	public void resampleProfile() {
+		dirty = true;
+		updateTimeData();
+	}
+
+	/**
+	 * Resamples the current profile and updates the graphs
+	 */
+	private void updateTimeData() {
+		if(profile != null) {
+			timeData = profile.resample(timeStep, r_wb, filter_length, v_max, v_tau, w_max, w_tau);
 
 			// Process time graph
-			int l = timeData[0].length;
+			int l = timeData.size();
 			mainFrame.updateLabel("range_time", l*timeStep);
 
 			// Process liner graph
-			double[][] linearData = new double[3][];
-			linearData[0] = timeData[0];
-			linearData[1] = timeData[1];
-			linearData[2] = timeData[2];
-			double minPos = Double.MAX_VALUE;
-			double maxPos = -Double.MAX_VALUE;
-			double minVel = Double.MAX_VALUE;
-			double maxVel = -Double.MAX_VALUE;
-			double minAcc = Double.MAX_VALUE;
-			double maxAcc = -Double.MAX_VALUE;
-			for(int i = 0; i < l; i++) {
-				minPos = Math.min(minPos, linearData[0][i]);
-				maxPos = Math.max(maxPos, linearData[0][i]);
-				minVel = Math.min(minVel, linearData[1][i]);
-				maxVel = Math.max(maxVel, linearData[1][i]);
-				minAcc = Math.min(minAcc, linearData[2][i]);
-				maxAcc = Math.max(maxAcc, linearData[2][i]);
-			}
+			mainFrame.linearGraph.graphs = new double[][] {timeData.get(Channel.LINEAR_POSITION),
+				timeData.get(Channel.LINEAR_VELOCITY), timeData.get(Channel.LINEAR_ACCELERATION)};
+			double minPos = timeData.getMinimum(Channel.LINEAR_POSITION);
+			double maxPos = timeData.getMaximum(Channel.LINEAR_POSITION);
 			mainFrame.linearGraph.maximums[0] = Math.max(Math.abs(minPos), Math.abs(maxPos));
 			mainFrame.updateLabel("range_lin_pos", mainFrame.linearGraph.maximums[0]);
 			mainFrame.updateLabel("min_lin_pos", minPos);
-			mainFrame.updateLabel("min_lin_vel", minVel);
-			mainFrame.updateLabel("min_lin_acc", minAcc);
+			mainFrame.updateLabel("min_lin_vel", timeData.getMinimum(Channel.LINEAR_VELOCITY));
+			mainFrame.updateLabel("min_lin_acc", timeData.getMinimum(Channel.LINEAR_ACCELERATION));
 			mainFrame.updateLabel("max_lin_pos", maxPos);
-			mainFrame.updateLabel("max_lin_vel", maxVel);
-			mainFrame.updateLabel("max_lin_acc", maxAcc);
-			mainFrame.linearGraph.graphs = linearData;
-
-			// Process rotation graph
-			double[][] angularData = new double[3][];
-			angularData[0] = new double[l];
-			angularData[1] = new double[l];
-			angularData[2] = new double[l];
-			for(int i = 0; i < l; i++) {
-				angularData[0][i] = timeData[3][i]*180/Math.PI;
-				angularData[1][i] = timeData[4][i]*180/Math.PI;
-				angularData[2][i] = timeData[5][i]*180/Math.PI;
-			}
-			minPos = Double.MAX_VALUE;
-			maxPos = -Double.MAX_VALUE;
-			minVel = Double.MAX_VALUE;
-			maxVel = -Double.MAX_VALUE;
-			minAcc = Double.MAX_VALUE;
-			maxAcc = -Double.MAX_VALUE;
-			for(int i = 0; i < l; i++) {
-				minPos = Math.min(minPos, angularData[0][i]);
-				maxPos = Math.max(maxPos, angularData[0][i]);
-				minVel = Math.min(minVel, angularData[1][i]);
-				maxVel = Math.max(maxVel, angularData[1][i]);
-				minAcc = Math.min(minAcc, angularData[2][i]);
-				maxAcc = Math.max(maxAcc, angularData[2][i]);
-			}
+			mainFrame.updateLabel("max_lin_vel", timeData.getMaximum(Channel.LINEAR_VELOCITY));
+			mainFrame.updateLabel("max_lin_acc", timeData.getMaximum(Channel.LINEAR_ACCELERATION));
+
+			// Process rotation graph, which the graph shows in degrees
+			double scale = mainFrame.angularGraph.scale;
+			mainFrame.angularGraph.graphs = new double[][] {timeData.get(Channel.ANGULAR_POSITION),
+				timeData.get(Channel.ANGULAR_VELOCITY), timeData.get(Channel.ANGULAR_ACCELERATION)};
+			minPos = scale*timeData.getMinimum(Channel.ANGULAR_POSITION);
+			maxPos = scale*timeData.getMaximum(Channel.ANGULAR_POSITION);
 			mainFrame.angularGraph.maximums[0] = Math.max(Math.abs(minPos), Math.abs(maxPos));
 			mainFrame.updateLabel("range_ang_pos", mainFrame.angularGraph.maximums[0]);
 			mainFrame.updateLabel("min_ang_pos", minPos);
-			mainFrame.updateLabel("min_ang_vel", minVel);
-			mainFrame.updateLabel("min_ang_acc", minAcc);
+			mainFrame.updateLabel("min_ang_vel", scale*timeData.getMinimum(Channel.ANGULAR_VELOCITY));
+			mainFrame.updateLabel("min_ang_acc", scale*timeData.getMinimum(Channel.ANGULAR_ACCELERATION));
 			mainFrame.updateLabel("max_ang_pos", maxPos);
-			mainFrame.updateLabel("max_ang_vel", maxVel);
-			mainFrame.updateLabel("max_ang_acc", maxAcc);
-			mainFrame.angularGraph.graphs = angularData;
+			mainFrame.updateLabel("max_ang_vel", scale*timeData.getMaximum(Channel.ANGULAR_VELOCITY));
+			mainFrame.updateLabel("max_ang_acc", scale*timeData.getMaximum(Channel.ANGULAR_ACCELERATION));
 
 			// Process voltage graph
-			double[][] sideData = new double[2][];
-			sideData[0] = timeData[6];
-			sideData[1] = timeData[7];
-			double minLeft = Double.MAX_VALUE;
-			double maxLeft = -Double.MAX_VALUE;
-			double minRight = Double.MAX_VALUE;
-			double maxRight = -Double.MAX_VALUE;
-			for(int i = 0; i < l; i++) {
-				minLeft = Math.min(minLeft, sideData[0][i]);
-				maxLeft = Math.max(maxLeft, sideData[0][i]);
-				minRight = Math.min(minRight, sideData[1][i]);
-				maxRight = Math.max(maxRight, sideData[1][i]);
-			}
-			mainFrame.updateLabel("min_left_vol", minLeft);
-			mainFrame.updateLabel("max_left_vol", maxLeft);
-			mainFrame.updateLabel("min_right_vol", minRight);
-			mainFrame.updateLabel("max_right_vol", maxRight);
-			mainFrame.sideGraph.graphs = sideData;
+			mainFrame.sideGraph.graphs = new double[][] {timeData.get(Channel.LEFT_VOLTAGE), timeData.get(Channel.RIGHT_VOLTAGE)};
+			mainFrame.updateLabel("min_left_vol", timeData.getMinimum(Channel.LEFT_VOLTAGE));
+			mainFrame.updateLabel("max_left_vol", timeData.getMaximum(Channel.LEFT_VOLTAGE));
+			mainFrame.updateLabel("min_right_vol", timeData.getMinimum(Channel.RIGHT_VOLTAGE));
+			mainFrame.updateLabel("max_right_vol", timeData.getMaximum(Channel.RIGHT_VOLTAGE));
 		}
 		else {
+			timeData = null;
 			mainFrame.linearGraph.graphs = null;
 			mainFrame.angularGraph.graphs = null;
 			mainFrame.sideGraph.graphs = null;
@@ -675,7 +749,7 @@ class PathPanel extends JPanel implements MouseListener, MouseMotionListener {
 				}
 			}
 			setWaypointLocation(x, y);
-			recalculateSplines();
+			recalculateSplines(waypoints.indexOf(currWaypoint));
 			recalculateProfile();
 			mainFrame.updateInspect();
 			mainFrame.linearGraph.repaint();
@@ -749,7 +823,7 @@ class PathPanel extends JPanel implements MouseListener, MouseMotionListener {
 
 		else if(state == EditState.EDITWAYPOINT) {
 			setWaypointLocation(x, y);
-			recalculateSplines();
+			recalculateSplines(waypoints.indexOf(currWaypoint));
 			recalculateProfile();
 			mainFrame.updateInspect();
 			mainFrame.linearGraph.repaint();
@@ -810,20 +884,14 @@ class PathPanel extends JPanel implements MouseListener, MouseMotionListener {
 				waypoint.a_t = default_a_t;
 				waypoint.a_m = default_a_m;
 
-				// Insert at location closest to current spline
-				double min_distance = Double.MAX_VALUE;
-				int min_index = 0;
-				for(int i = 0; i < times.length; i++) {
-					double distance = Math.hypot(posx - timePoints[i][0], posy - timePoints[i][1]);
-					if(distance < min_distance) {
-						min_index = i;
-						min_distance = distance;
-					}
-				}
-				if(min_index == times.length-1 || times.length == 0) {
+				// Insert at location closest to current spline,
+				// extending the path instead when that is within half a sample of either end
+				double min_time = splines == null ? 0 : splines.project(posx, posy);
+				double min_length = splines == null ? 0 : splines.getLength(min_time);
+				if(splines == null || splines.getLength() - min_length < segmentLength/2) {
 					waypoints.add(waypoint);
 				}
-				else if(min_index == 0) {
+				else if(min_length < segmentLength/2) {
 					waypoints.add(0, waypoint);
 					for(Limit limit:limits) {
 						if(limit != firstLimit) {
@@ -833,7 +901,6 @@ class PathPanel extends JPanel implements MouseListener, MouseMotionListener {
 					}
 				}
 				else {
-					double min_time = times[min_index];
 					int rounded_time = (int)min_time;
 					waypoints.add(rounded_time+1, waypoint);
 					for(Limit limit:limits) {
@@ -881,8 +948,8 @@ class PathPanel extends JPanel implements MouseListener, MouseMotionListener {
 
 		else if(state == EditState.EDITWAYPOINT) {
 			setWaypointLocation(x, y);
+			recalculateSplines(waypoints.indexOf(currWaypoint));
 			currWaypoint = null;
-			recalculateSplines();
 			recalculateProfile();
 			mainFrame.updateInspect();
 			mainFrame.linearGraph.repaint();
@@ -947,33 +1014,20 @@ class PathPanel extends JPanel implements MouseListener, MouseMotionListener {
 			}
 		}
 
-		else if(state == EditState.ADDLIMIT && times.length > 0) {
+		else if(state == EditState.ADDLIMIT && splines != null) {
 			double posx = (x - getWidth()/2.0)/scale - offx;
 			double posy = -(y - getHeight()/2.0)/scale - offy;
 
 			// Find location closest to spline
-			double min_distance = Double.MAX_VALUE;
-			int min_index = 0;
-			for(int i = 0; i < times.length; i++) {
-				double distance = Math.hypot(posx - timePoints[i][0], posy - timePoints[i][1]);
-				if(distance < min_distance) {
-					min_index = i;
-					min_distance = distance;
-				}
-			}
-			int index1 = min_index - (int)Math.round(default_length/2/segmentLength);
-			int index2 = min_index + (int)Math.round(default_length/2/segmentLength);
-			if(index1 < 0) {
-				index1 = 0;
-			}
-			if(index2 >= times.length) {
-				index2 = times.length-1;
-			}
+			double min_time = splines.project(posx, posy);
+			double s = splines.getLength(min_time);
+			double s1 = Math.max(s - default_length/2, 0);
+			double s2 = Math.min(s + default_length/2, splines.getLength());
 
 			// Create limit
 			Limit limit = new Limit();
-			limit.t1 = times[index1];
-			limit.t2 = times[index2];
+			limit.t1 = splines.getParameter(s1);
+			limit.t2 = Math.min(splines.getParameter(s2), Math.nextDown((double)splines.getSegmentCount()));
 			limit.type = LimitType.VOLTAGE;
 			limit.limit = 1;
 			limits.add(limit);
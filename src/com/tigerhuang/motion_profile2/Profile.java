@@ -0,0 +1,127 @@
+package com.tigerhuang.motion_profile2;
+
+/**
+ * A solved velocity profile in the distance domain.
+ *
+ * Keeps the samples with their velocities and the time each is reached,
+ * so the profile can be resampled to any timestep, or asked when any point
+ * of the path is reached, without solving the velocities again.
+ *
+ * @author Tiger Huang
+ *
+ */
+public class Profile {
+	/**
+	 * The global parameter of each sample (unitless)
+	 */
+	public double[] us;
+	/**
+	 * The distance from the start of the path to each sample (length)
+	 */
+	public double[] ds;
+	/**
+	 * The distance between consecutive samples (length), one less than the number of samples
+	 */
+	public double[] ls;
+	/**
+	 * The heading of each sample relative to the first, unwrapped (rad)
+	 */
+	public double[] hs;
+	/**
+	 * The curvature of each sample (1/length)
+	 */
+	public double[] ks;
+	/**
+	 * The velocity at each sample (length/s)
+	 */
+	public double[] vs;
+	/**
+	 * The time each sample is reached (s)
+	 */
+	public double[] ts;
+
+	/**
+	 * Creates a profile from solved segment data.
+	 * The velocities are copied, so later solves of the segment data do not change the profile.
+	 *
+	 * @param splineData The samples with velocities filled in by generateVelocityProfile
+	 */
+	public Profile(SegmentData splineData) {
+		int l = splineData.size();
+		us = splineData.us;
+		ds = splineData.ds;
+		ls = splineData.ls;
+		ks = splineData.ks;
+		vs = splineData.vs.clone();
+
+		// Find times
+		ts = new double[l];
+		for(int i = 0; i < l-1; i++) {
+			ts[i+1] = ts[i] + 2*ls[i] / (vs[i]+vs[i+1]);
+		}
+
+		// Unwrap headings
+		hs = new double[l];
+		for(int i = 0; i < l-1; i++) {
+			double dh = splineData.hs[i+1] - splineData.hs[i];
+			if(dh > Math.PI) {
+				dh -= Math.PI*2;
+			}
+			if(dh < -Math.PI) {
+				dh += Math.PI*2;
+			}
+			hs[i+1] = hs[i] + dh;
+		}
+	}
+
+	/**
+	 * Gets the time taken to follow the whole profile.
+	 *
+	 * @return The duration (s)
+	 */
+	public double getDuration() {
+		return ts[ts.length-1];
+	}
+
+	/**
+	 * Finds the time a distance along the path is reached, by binary search.
+	 * Position is interpolated linearly in time within each interval, the same as when resampling.
+	 *
+	 * @param distance The distance from the start of the path, clamped to the path (length)
+	 * @return The time (s)
+	 */
+	public double timeAt(double distance) {
+		int lo = 0;
+		int hi = ds.length-2;
+		while(lo < hi) {
+			int mid = (lo+hi+1) >>> 1;
+			if(ds[mid] <= distance) {
+				lo = mid;
+			}
+			else {
+				hi = mid-1;
+			}
+		}
+		double x = Math.min(Math.max((distance-ds[lo]) / ls[lo], 0), 1);
+		return ts[lo] + x*(ts[lo+1]-ts[lo]);
+	}
+
+	/**
+	 * Resamples the profile at a fixed timestep.
+	 * The channels of the result are only computed when they are first read.
+	 *
+	 * @param dt The timestep
+	 * @param wheelbase The distance between the robot's wheels
+	 * @param filter_length The length of the boxcar filter applied to each channel in number of timesteps, or 0 for none
+	 * @param v_max The maximum linear velocity
+	 * @param v_tau The velocity time constant for linear motion at max voltage
+	 * @param w_max The maximum angular velocity
+	 * @param w_tau The velocity time constant for angular motion at max voltage
+	 * @return The resampled profile
+	 */
+	public TimeProfile resample(double dt, double wheelbase, int filter_length,
+			double v_max, double v_tau,
+			double w_max, double w_tau) {
+		return new TimeProfile(this, dt, wheelbase, filter_length, v_max, v_tau, w_max, w_tau);
+	}
+}
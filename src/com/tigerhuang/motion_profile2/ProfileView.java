@@ -0,0 +1,129 @@
+package com.tigerhuang.motion_profile2;
+
+/**
+ * A mirrored and/or reversed view of a time profile.
+ *
+ * Mirroring follows the path reflected across its starting direction, which negates the angular channels
+ * and swaps the left and right sides. Reversing drives the same path backwards, which negates the linear
+ * channels, and since the robot's right side then faces the path's left side, the left side becomes the
+ * negated right side and the other way around. Values are transformed as they are read, so every variant
+ * shares the channels of the same profile.
+ *
+ * @author Tiger Huang
+ *
+ */
+public class ProfileView {
+	// Profile being viewed
+	private TimeProfile profile;
+	// Channel of the profile and sign each channel of the view is read from
+	private Channel[] sources;
+	private double[] signs;
+
+	/**
+	 * Creates a view of a time profile.
+	 *
+	 * @param profile The profile to view
+	 * @param mirrored Whether to mirror the profile
+	 * @param reversed Whether to drive the profile backwards
+	 */
+	public ProfileView(TimeProfile profile, boolean mirrored, boolean reversed) {
+		this.profile = profile;
+		Channel[] channels = Channel.values();
+		sources = new Channel[channels.length];
+		signs = new double[channels.length];
+		for(Channel channel:channels) {
+			Channel source = channel;
+			double sign = 1;
+			switch(channel) {
+				case LINEAR_POSITION:
+				case LINEAR_VELOCITY:
+				case LINEAR_ACCELERATION:
+					if(reversed) {
+						sign = -1;
+					}
+					break;
+				case ANGULAR_POSITION:
+				case ANGULAR_VELOCITY:
+				case ANGULAR_ACCELERATION:
+					if(mirrored) {
+						sign = -1;
+					}
+					break;
+				case LEFT_VOLTAGE:
+				case RIGHT_VOLTAGE:
+				case LEFT_DISTANCE:
+				case RIGHT_DISTANCE:
+					if(mirrored != reversed) {
+						source = opposite(channel);
+					}
+					if(reversed) {
+						sign = -1;
+					}
+					break;
+			}
+			sources[channel.ordinal()] = source;
+			signs[channel.ordinal()] = sign;
+		}
+	}
+
+	/**
+	 * Gets the number of timesteps.
+	 *
+	 * @return The length of every channel
+	 */
+	public int size() {
+		return profile.size();
+	}
+
+	/**
+	 * Gets a value of a channel.
+	 *
+	 * @param channel The channel to read
+	 * @param index The timestep to read
+	 * @return The transformed value
+	 */
+	public double get(Channel channel, int index) {
+		int i = channel.ordinal();
+		return signs[i] * profile.get(sources[i])[index];
+	}
+
+	/**
+	 * Gets the smallest value of a channel.
+	 *
+	 * @param channel The channel to check
+	 * @return The minimum of the transformed channel
+	 */
+	public double getMinimum(Channel channel) {
+		int i = channel.ordinal();
+		return signs[i] > 0 ? profile.getMinimum(sources[i]) : -profile.getMaximum(sources[i]);
+	}
+
+	/**
+	 * Gets the largest value of a channel.
+	 *
+	 * @param channel The channel to check
+	 * @return The maximum of the transformed channel
+	 */
+	public double getMaximum(Channel channel) {
+		int i = channel.ordinal();
+		return signs[i] > 0 ? profile.getMaximum(sources[i]) : -profile.getMinimum(sources[i]);
+	}
+
+	/**
+	 * Gets the channel for the other side of the robot.
+	 */
+	private static Channel opposite(Channel channel) {
+		switch(channel) {
+			case LEFT_VOLTAGE:
+				return Channel.RIGHT_VOLTAGE;
+			case RIGHT_VOLTAGE:
+				return Channel.LEFT_VOLTAGE;
+			case LEFT_DISTANCE:
+				return Channel.RIGHT_DISTANCE;
+			case RIGHT_DISTANCE:
+				return Channel.LEFT_DISTANCE;
+			default:
+				return channel;
+		}
+	}
+}
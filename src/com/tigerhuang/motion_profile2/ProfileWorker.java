@@ -0,0 +1,204 @@
+package com.tigerhuang.motion_profile2;
+
+import javax.swing.SwingUtilities;
+
+/**
+ * Solves velocity profiles for the path editor on a background thread
+ *
+ * Each request is a snapshot of the path, limits and settings taken on the event dispatch thread,
+ * so the editor can keep changing them while a solve runs. Only the newest request matters:
+ * a request that has not started yet is replaced, a solve in progress is cancelled as soon as a
+ * newer request arrives, and results are dropped on the event dispatch thread if a newer request
+ * was made in the meantime. The samples of the path belong to the worker thread, which keeps them
+ * between requests so edits only resample the changed splines and the solver can warm start.
+ *
+ * @author Tiger Huang
+ *
+ */
+class ProfileWorker implements Runnable {
+	// Marks a request that does not change the path
+	public static final int NO_CHANGE = Integer.MAX_VALUE;
+
+	/**
+	 * Snapshot of everything a solve depends on, which is not modified once submitted
+	 */
+	static class Request {
+		// Path, or null if there are too few waypoints
+		SplinePath splines;
+		// First spline changed since the previous request, or NO_CHANGE
+		int changed = NO_CHANGE;
+		// Whether every sample has to be rebuilt
+		boolean rebuild;
+		// Copies of the limits
+		Limit[] limits;
+
+		// Parameters
+		double segmentLength;
+		SolverMode solverMode;
+		boolean parallel;
+		double wheelbase;
+		double smoothing;
+		int max_iterations;
+		double adjust_scale;
+		double adjust_offset;
+		double v_initial;
+		double v_final;
+		double v_max;
+		double v_tau;
+		double w_max;
+		double w_tau;
+		double j_max;
+
+		// Order of the request
+		private int generation;
+	}
+
+	// Editor that receives the results
+	private PathPanel pathPanel;
+
+	// Request waiting to be started, guarded by this
+	private Request pending;
+	// Generation of the newest request
+	private volatile int latest;
+
+	// Samples of the last path solved, only used by the worker thread
+	private SegmentData splineData;
+
+	/**
+	 * Creates and starts a worker
+	 *
+	 * @param pathPanel The editor to hand results to
+	 */
+	public ProfileWorker(PathPanel pathPanel) {
+		this.pathPanel = pathPanel;
+		Thread thread = new Thread(this, "Profile solver");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * Queues a request, replacing any request that has not started and cancelling any solve in progress.
+	 * Path changes of a replaced request are carried over, since the samples were not updated for them.
+	 *
+	 * @param request The snapshot to solve
+	 * @return The generation of the request, which is passed back with its result
+	 */
+	public synchronized int submit(Request request) {
+		if(pending != null) {
+			request.changed = Math.min(request.changed, pending.changed);
+			request.rebuild |= pending.rebuild;
+		}
+		request.generation = latest+1;
+		latest = request.generation;
+		pending = request;
+		notify();
+		return request.generation;
+	}
+
+	/**
+	 * Checks whether a request is still the newest one
+	 */
+	private boolean isLatest(int generation) {
+		return latest == generation;
+	}
+
+	/**
+	 * Worker loop
+	 */
+	@Override
+	public void run() {
+		for(;;) {
+			Request request;
+			synchronized(this) {
+				while(pending == null) {
+					try {
+						wait();
+					}
+					catch(InterruptedException e) {
+						return;
+					}
+				}
+				request = pending;
+				pending = null;
+			}
+			try {
+				solve(request);
+			}
+			catch(RuntimeException e) {
+				// Start over from fresh samples on the next request
+				splineData = null;
+				int generation = request.generation;
+				SwingUtilities.invokeLater(new Runnable() {
+					@Override
+					public void run() {
+						if(isLatest(generation)) {
+							pathPanel.failProfile(e, generation);
+						}
+					}
+				});
+			}
+		}
+	}
+
+	/**
+	 * Updates the samples and solves a request, then hands the profile to the editor
+	 */
+	private void solve(Request request) {
+		int generation = request.generation;
+
+		// Update the samples, which are always brought up to date before solving so later requests can build on them
+		if(request.splines == null) {
+			splineData = null;
+		}
+		else if(splineData == null || request.rebuild) {
+			splineData = SplineGenerator.uniformLengthSegmentData(request.splines, request.segmentLength, request.parallel);
+		}
+		else if(request.changed != NO_CHANGE) {
+			splineData = SplineGenerator.updateSegmentData(splineData, request.splines, request.segmentLength, request.changed);
+		}
+
+		// Solve
+		Profile profile = null;
+		if(splineData != null) {
+			SolverMonitor monitor = new SolverMonitor() {
+				@Override
+				public boolean isCancelled() {
+					return !isLatest(generation);
+				}
+
+				@Override
+				public void progress(int iteration, double residual, int changed) {
+					if(iteration % 25 == 0) {
+						SwingUtilities.invokeLater(new Runnable() {
+							@Override
+							public void run() {
+								if(isLatest(generation)) {
+									pathPanel.showProgress(iteration, residual, changed);
+								}
+							}
+						});
+					}
+				}
+			};
+			boolean done = SplineGenerator.generateVelocityProfile(splineData, request.limits, request.solverMode, true, request.parallel,
+					request.wheelbase, request.smoothing, request.max_iterations, request.adjust_scale, request.adjust_offset,
+					request.v_initial, request.v_final, request.v_max, request.v_tau, request.w_max, request.w_tau, request.j_max, monitor);
+			if(!done) {
+				// The newer request will solve again
+				return;
+			}
+			profile = new Profile(splineData);
+		}
+
+		// Publish
+		Profile result = profile;
+		SwingUtilities.invokeLater(new Runnable() {
+			@Override
+			public void run() {
+				if(isLatest(generation)) {
+					pathPanel.applyProfile(result, generation);
+				}
+			}
+		});
+	}
+}
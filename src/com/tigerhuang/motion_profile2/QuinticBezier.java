@@ -9,6 +9,17 @@ package com.tigerhuang.motion_profile2;
  *
  */
 public class QuinticBezier {
+	//Arc length table resolution (subintervals per curve)
+	private static final int TABLE_SIZE = 32;
+
+	//5 point Gauss-Legendre quadrature on [-1, 1]
+	private static final double[] GAUSS_NODES = {
+		-0.9061798459386640, -0.5384693101056831, 0.0, 0.5384693101056831, 0.9061798459386640,
+	};
+	private static final double[] GAUSS_WEIGHTS = {
+		0.2369268850561891, 0.4786286704993665, 0.5688888888888889, 0.4786286704993665, 0.2369268850561891,
+	};
+
 	//Control points
 	private double x0, y0;
 	private double x1, y1;
@@ -32,6 +43,9 @@ public class QuinticBezier {
 	private double cyt1;
 	private double cyt0;
 
+	//Cumulative arc length at t = k/TABLE_SIZE (computed on first use, and volatile so a table built on one thread is seen whole by others)
+	private volatile double[] lengths;
+
 	/**
 	 * Creates a QuinticBezier from the specified waypoints.
 	 * 
@@ -77,6 +91,30 @@ public class QuinticBezier {
 		cyt2 = 10*y0 - 20*y1 + 10*y2;
 		cyt1 = -5*y0 + 5*y1;
 		cyt0 = y0;
+
+		lengths = null;
+	}
+
+	/**
+	 * Copies the polynomial coefficients into an array.
+	 * 
+	 * @param dest the array to copy into
+	 * @param offset the index of dest to start at<br>
+	 * The format is [cxt5, cxt4, cxt3, cxt2, cxt1, cxt0, cyt5, cyt4, cyt3, cyt2, cyt1, cyt0]
+	 */
+	void getCoefficients(double[] dest, int offset) {
+		dest[offset]    = cxt5;
+		dest[offset+1]  = cxt4;
+		dest[offset+2]  = cxt3;
+		dest[offset+3]  = cxt2;
+		dest[offset+4]  = cxt1;
+		dest[offset+5]  = cxt0;
+		dest[offset+6]  = cyt5;
+		dest[offset+7]  = cyt4;
+		dest[offset+8]  = cyt3;
+		dest[offset+9]  = cyt2;
+		dest[offset+10] = cyt1;
+		dest[offset+11] = cyt0;
 	}
 
 	/**
@@ -86,13 +124,7 @@ public class QuinticBezier {
 	 * @return the x position
 	 */
 	public double getX(double t) {
-		return
-			cxt5 * t * t * t * t * t +
-			cxt4 * t * t * t * t +
-			cxt3 * t * t * t +
-			cxt2 * t * t +
-			cxt1 * t +
-			cxt0;
+		return ((((cxt5*t + cxt4)*t + cxt3)*t + cxt2)*t + cxt1)*t + cxt0;
 	}
 
 	/**
@@ -102,13 +134,7 @@ public class QuinticBezier {
 	 * @return the y position
 	 */
 	public double getY(double t) {
-		return
-			cyt5 * t * t * t * t * t +
-			cyt4 * t * t * t * t +
-			cyt3 * t * t * t +
-			cyt2 * t * t +
-			cyt1 * t +
-			cyt0;
+		return ((((cyt5*t + cyt4)*t + cyt3)*t + cyt2)*t + cyt1)*t + cyt0;
 	}
 
 	/**
@@ -118,12 +144,7 @@ public class QuinticBezier {
 	 * @return the first derivative of x position
 	 */
 	public double getDX(double t) {
-		return
-			5 * cxt5 * t * t * t * t +
-			4 * cxt4 * t * t * t +
-			3 * cxt3 * t * t +
-			2 * cxt2 * t +
-				cxt1;
+		return (((5*cxt5*t + 4*cxt4)*t + 3*cxt3)*t + 2*cxt2)*t + cxt1;
 	}
 
 	/**
@@ -133,12 +154,7 @@ public class QuinticBezier {
 	 * @return the first derivative of y position
 	 */
 	public double getDY(double t) {
-		return
-			5 * cyt5 * t * t * t * t +
-			4 * cyt4 * t * t * t +
-			3 * cyt3 * t * t +
-			2 * cyt2 * t +
-				cyt1;
+		return (((5*cyt5*t + 4*cyt4)*t + 3*cyt3)*t + 2*cyt2)*t + cyt1;
 	}
 
 	/**
@@ -148,11 +164,7 @@ public class QuinticBezier {
 	 * @return the second derivative of x position
 	 */
 	public double getDDX(double t) {
-		return
-			20 * cxt5 * t * t * t +
-			12 * cxt4 * t * t +
-			6  * cxt3 * t +
-			2  * cxt2;
+		return ((20*cxt5*t + 12*cxt4)*t + 6*cxt3)*t + 2*cxt2;
 	}
 
 	/**
@@ -162,11 +174,7 @@ public class QuinticBezier {
 	 * @return the second derivative of y position
 	 */
 	public double getDDY(double t) {
-		return
-			20 * cyt5 * t * t * t +
-			12 * cyt4 * t * t +
-			6  * cyt3 * t +
-			2  * cyt2;
+		return ((20*cyt5*t + 12*cyt4)*t + 6*cyt3)*t + 2*cyt2;
 	}
 
 	/**
@@ -176,10 +184,7 @@ public class QuinticBezier {
 	 * @return the heading (normalized so -PI &#8804; heading &#8804; PI)
 	 */
 	public double getHeading(double t) {
-		double theta = Math.atan2(getDY(t), getDX(t)) - Math.PI/2;
-		if(theta < -Math.PI) theta += Math.PI * 2;
-		if(theta >  Math.PI) theta -= Math.PI * 2;
-		return theta;
+		return heading(getDX(t), getDY(t));
 	}
 
 	/**
@@ -191,10 +196,352 @@ public class QuinticBezier {
 	 * @return the curvature
 	 */
 	public double getCurvature(double t) {
-		double dx = getDX(t);
-		double dy = getDY(t);
-		double ddx = getDDX(t);
-		double ddy = getDDY(t);
+		return curvature(getDX(t), getDY(t), getDDX(t), getDDY(t));
+	}
+
+	/**
+	 * Evaluates position and derivatives at arc parameter t in a single pass.
+	 * 
+	 * This is much cheaper than calling the individual getters when more
+	 * than one value is needed at the same point.
+	 * 
+	 * @param t The position along the arc where 0 &#8804; t &#8804; 1
+	 * @param result The buffer to fill. The layout is given below.
+	 * Heading and curvature are only computed if the buffer is long enough to hold them.<br>
+	 * 0. x position<br>
+	 * 1. y position<br>
+	 * 2. First derivative of x position<br>
+	 * 3. First derivative of y position<br>
+	 * 4. Second derivative of x position<br>
+	 * 5. Second derivative of y position<br>
+	 * 6. Heading<br>
+	 * 7. Curvature
+	 */
+	public void evaluate(double t, double[] result) {
+		double dx = (((5*cxt5*t + 4*cxt4)*t + 3*cxt3)*t + 2*cxt2)*t + cxt1;
+		double dy = (((5*cyt5*t + 4*cyt4)*t + 3*cyt3)*t + 2*cyt2)*t + cyt1;
+		double ddx = ((20*cxt5*t + 12*cxt4)*t + 6*cxt3)*t + 2*cxt2;
+		double ddy = ((20*cyt5*t + 12*cyt4)*t + 6*cyt3)*t + 2*cyt2;
+		result[0] = ((((cxt5*t + cxt4)*t + cxt3)*t + cxt2)*t + cxt1)*t + cxt0;
+		result[1] = ((((cyt5*t + cyt4)*t + cyt3)*t + cyt2)*t + cyt1)*t + cyt0;
+		result[2] = dx;
+		result[3] = dy;
+		result[4] = ddx;
+		result[5] = ddy;
+		if(result.length > 6) {
+			result[6] = heading(dx, dy);
+		}
+		if(result.length > 7) {
+			result[7] = curvature(dx, dy, ddx, ddy);
+		}
+	}
+
+	/**
+	 * Samples the curve at evenly spaced arc parameters using forward differencing.
+	 * 
+	 * Only additions are done per sample, so this is much cheaper than evaluating
+	 * the polynomials at every point when tessellating the curve.
+	 * 
+	 * @param segments The number of segments to split the curve into. segments+1 samples are produced.
+	 * @param points The positions of the samples. The format is [x0, y0; x1, y1; ...]
+	 * @param headings The headings of the samples, or null if they are not needed
+	 * @param curvatures The curvatures of the samples, or null if they are not needed
+	 */
+	public void sampleUniform(int segments, double[] points, double[] headings, double[] curvatures) {
+		double h = 1.0/segments;
+		double[] x = differences(cxt5, cxt4, cxt3, cxt2, cxt1, cxt0, h);
+		double[] y = differences(cyt5, cyt4, cyt3, cyt2, cyt1, cyt0, h);
+		double[] dx = differences(0, 5*cxt5, 4*cxt4, 3*cxt3, 2*cxt2, cxt1, h);
+		double[] dy = differences(0, 5*cyt5, 4*cyt4, 3*cyt3, 2*cyt2, cyt1, h);
+		double[] ddx = differences(0, 0, 20*cxt5, 12*cxt4, 6*cxt3, 2*cxt2, h);
+		double[] ddy = differences(0, 0, 20*cyt5, 12*cyt4, 6*cyt3, 2*cyt2, h);
+		for(int j = 0; j <= segments; j++) {
+			points[j*2] = x[0];
+			points[j*2+1] = y[0];
+			if(headings != null) {
+				headings[j] = heading(dx[0], dy[0]);
+			}
+			if(curvatures != null) {
+				curvatures[j] = curvature(dx[0], dy[0], ddx[0], ddy[0]);
+			}
+			for(int k = 0; k < 5; k++) {
+				x[k] += x[k+1];
+				y[k] += y[k+1];
+				dx[k] += dx[k+1];
+				dy[k] += dy[k+1];
+				ddx[k] += ddx[k+1];
+				ddy[k] += ddy[k+1];
+			}
+		}
+	}
+
+	/**
+	 * Computes the forward differences of a polynomial at t = 0.
+	 * 
+	 * The differences are computed directly from the coefficients using
+	 * Stirling numbers of the second kind to avoid cancellation error.
+	 * 
+	 * @param c5 the coefficient of t^5
+	 * @param c4 the coefficient of t^4
+	 * @param c3 the coefficient of t^3
+	 * @param c2 the coefficient of t^2
+	 * @param c1 the coefficient of t
+	 * @param c0 the constant coefficient
+	 * @param h the step size
+	 * @return the differences, where element k is the kth forward difference
+	 */
+	private static double[] differences(double c5, double c4, double c3, double c2, double c1, double c0, double h) {
+		double a1 = c1*h;
+		double a2 = c2*h*h;
+		double a3 = c3*h*h*h;
+		double a4 = c4*h*h*h*h;
+		double a5 = c5*h*h*h*h*h;
+		return new double[] {
+			c0,
+			a1 + a2 + a3 + a4 + a5,
+			2*(a2 + 3*a3 + 7*a4 + 15*a5),
+			6*(a3 + 6*a4 + 25*a5),
+			24*(a4 + 10*a5),
+			120*a5,
+		};
+	}
+
+	/**
+	 * Gets the speed along the curve at arc parameter t.
+	 * 
+	 * @param t The position along the arc where 0 &#8804; t &#8804; 1
+	 * @return the length per unit of arc parameter
+	 */
+	public double getSpeed(double t) {
+		return Math.hypot(getDX(t), getDY(t));
+	}
+
+	/**
+	 * Gets the total arc length of the curve.
+	 * 
+	 * @return the arc length
+	 */
+	public double getLength() {
+		return getLengthTable()[TABLE_SIZE];
+	}
+
+	/**
+	 * Gets the arc length from the start of the curve to arc parameter t.
+	 * 
+	 * @param t The position along the arc where 0 &#8804; t &#8804; 1
+	 * @return the arc length
+	 */
+	public double getLength(double t) {
+		double[] table = getLengthTable();
+		int k = (int)(t * TABLE_SIZE);
+		if(k >= TABLE_SIZE) {
+			k = TABLE_SIZE-1;
+		}
+		if(k < 0) {
+			k = 0;
+		}
+		return table[k] + integrate((double)k/TABLE_SIZE, t);
+	}
+
+	/**
+	 * Gets the arc parameter at a given arc length from the start of the curve.
+	 * 
+	 * The table is searched for the bracketing interval, the parameter is
+	 * interpolated within it, and then refined with one Newton step.
+	 * 
+	 * @param s The arc length where 0 &#8804; s &#8804; getLength()
+	 * @return the arc parameter
+	 */
+	public double getParameter(double s) {
+		double[] table = getLengthTable();
+		if(s <= 0) {
+			return 0;
+		}
+		if(s >= table[TABLE_SIZE]) {
+			return 1;
+		}
+
+		// Find interval with table[k] <= s < table[k+1]
+		int lo = 0;
+		int hi = TABLE_SIZE;
+		while(hi - lo > 1) {
+			int mid = (lo + hi) >>> 1;
+			if(table[mid] <= s) {
+				lo = mid;
+			}
+			else {
+				hi = mid;
+			}
+		}
+		double t0 = (double)lo/TABLE_SIZE;
+		double t1 = (double)hi/TABLE_SIZE;
+		double t = t0 + (t1-t0) * (s-table[lo]) / (table[hi]-table[lo]);
+
+		// Newton correction
+		double speed = getSpeed(t);
+		if(speed > 0) {
+			t -= (table[lo] + integrate(t0, t) - s) / speed;
+			if(t < t0) t = t0;
+			if(t > t1) t = t1;
+		}
+		return t;
+	}
+
+	/**
+	 * Gets the arc length table, computing it if needed.
+	 * 
+	 * @return the cumulative arc length at t = k/TABLE_SIZE
+	 */
+	private double[] getLengthTable() {
+		double[] table = lengths;
+		if(table == null) {
+			table = new double[TABLE_SIZE+1];
+			for(int k = 0; k < TABLE_SIZE; k++) {
+				table[k+1] = table[k] + integrate((double)k/TABLE_SIZE, (k+1.0)/TABLE_SIZE);
+			}
+			lengths = table;
+		}
+		return table;
+	}
+
+	/**
+	 * Integrates the speed between two arc parameters with Gauss-Legendre quadrature.
+	 * 
+	 * @param a the start arc parameter
+	 * @param b the end arc parameter
+	 * @return the arc length between a and b
+	 */
+	private double integrate(double a, double b) {
+		double half = (b-a)/2;
+		double mid = (a+b)/2;
+		double sum = 0;
+		for(int i = 0; i < GAUSS_NODES.length; i++) {
+			sum += GAUSS_WEIGHTS[i] * getSpeed(mid + half*GAUSS_NODES[i]);
+		}
+		return sum * half;
+	}
+
+	/**
+	 * Finds the arc parameter of the point on the curve closest to a given point.
+	 * 
+	 * The curve is coarsely sampled, and every local minimum of the sampled
+	 * distance is refined with Newton iterations on the derivative of the squared distance.
+	 * The iterations are kept within the neighboring samples, using bisection
+	 * whenever a Newton step would leave them.
+	 * 
+	 * @param px the x position of the point
+	 * @param py the y position of the point
+	 * @return the arc parameter of the closest point where 0 &#8804; t &#8804; 1
+	 */
+	public double project(double px, double py) {
+		// Coarse search
+		int samples = 16;
+		double[] ds = new double[samples+1];
+		for(int i = 0; i <= samples; i++) {
+			double ti = (double)i/samples;
+			double dx = getX(ti) - px;
+			double dy = getY(ti) - py;
+			ds[i] = dx*dx + dy*dy;
+		}
+
+		// Refine each local minimum
+		double[] point = new double[6];
+		double best = Double.MAX_VALUE;
+		double result = 0;
+		for(int i = 0; i <= samples; i++) {
+			if((i > 0 && ds[i-1] < ds[i]) || (i < samples && ds[i+1] < ds[i])) {
+				continue;
+			}
+			double t = (double)i/samples;
+			double a = Math.max(0, (i-1.0)/samples);
+			double b = Math.min(1, (i+1.0)/samples);
+			for(int j = 0; j < 20; j++) {
+				evaluate(t, point);
+				double ex = point[0] - px;
+				double ey = point[1] - py;
+				double f = ex*point[2] + ey*point[3];
+				double df = point[2]*point[2] + point[3]*point[3] + ex*point[4] + ey*point[5];
+
+				// Shrink the bracket around the minimum
+				if(f > 0) {
+					b = t;
+				}
+				else {
+					a = t;
+				}
+
+				// Newton step, falling back to bisection when it leaves the bracket
+				double tn = df > 0 ? t - f/df : (a+b)/2;
+				if(tn <= a || tn >= b) {
+					tn = (a+b)/2;
+				}
+				boolean done = Math.abs(tn - t) < 1e-12 || b - a < 1e-12;
+				t = tn;
+				if(done) {
+					break;
+				}
+			}
+
+			// Keep the sample if the refinement wandered off
+			double dx = getX(t) - px;
+			double dy = getY(t) - py;
+			double d = dx*dx + dy*dy;
+			if(d > ds[i]) {
+				t = (double)i/samples;
+				d = ds[i];
+			}
+			if(d < best) {
+				best = d;
+				result = t;
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Gets a lower bound of the distance from a point to the curve.
+	 * 
+	 * The curve lies within the bounding box of its control points,
+	 * so the distance to that box is never more than the distance to the curve.
+	 * 
+	 * @param px the x position of the point
+	 * @param py the y position of the point
+	 * @return the distance from the point to the bounding box of the control points
+	 */
+	public double getBoundDistance(double px, double py) {
+		double minx = Math.min(Math.min(Math.min(x0, x1), Math.min(x2, x3)), Math.min(x4, x5));
+		double maxx = Math.max(Math.max(Math.max(x0, x1), Math.max(x2, x3)), Math.max(x4, x5));
+		double miny = Math.min(Math.min(Math.min(y0, y1), Math.min(y2, y3)), Math.min(y4, y5));
+		double maxy = Math.max(Math.max(Math.max(y0, y1), Math.max(y2, y3)), Math.max(y4, y5));
+		double dx = Math.max(0, Math.max(minx - px, px - maxx));
+		double dy = Math.max(0, Math.max(miny - py, py - maxy));
+		return Math.hypot(dx, dy);
+	}
+
+	/**
+	 * Converts a tangent vector into a heading.
+	 * 
+	 * @param dx the x component of the tangent
+	 * @param dy the y component of the tangent
+	 * @return the heading (normalized so -PI &#8804; heading &#8804; PI)
+	 */
+	static double heading(double dx, double dy) {
+		double theta = Math.atan2(dy, dx) - Math.PI/2;
+		if(theta < -Math.PI) theta += Math.PI * 2;
+		if(theta >  Math.PI) theta -= Math.PI * 2;
+		return theta;
+	}
+
+	/**
+	 * Computes the curvature from the first and second derivatives.
+	 * 
+	 * @param dx the first derivative of x position
+	 * @param dy the first derivative of y position
+	 * @param ddx the second derivative of x position
+	 * @param ddy the second derivative of y position
+	 * @return the curvature
+	 */
+	static double curvature(double dx, double dy, double ddx, double ddy) {
 		double d = Math.hypot(dx, dy);
 		return (dx*ddy - dy*ddx) / (d*d*d);
 	}
@@ -0,0 +1,152 @@
+package com.tigerhuang.motion_profile2;
+
+/**
+ * Arc length parameterized samples of a path.
+ * 
+ * The geometry of every sample is computed once when the path changes,
+ * and is then shared by the velocity solver, the time parameterizer and the editor.
+ * 
+ * @author Tiger Huang
+ *
+ */
+public class SegmentData {
+	/**
+	 * The global parameter of each sample (unitless)
+	 */
+	public double[] us;
+	/**
+	 * The distance between consecutive samples (length), one less than the number of samples
+	 */
+	public double[] ls;
+	/**
+	 * The distance from the start of the path to each sample (length)
+	 */
+	public double[] ds;
+	/**
+	 * The x position of each sample (length)
+	 */
+	public double[] xs;
+	/**
+	 * The y position of each sample (length)
+	 */
+	public double[] ys;
+	/**
+	 * The heading of each sample (rad)
+	 */
+	public double[] hs;
+	/**
+	 * The curvature of each sample (1/length)
+	 */
+	public double[] ks;
+	/**
+	 * The velocity at each sample (length/s), filled in by the velocity solver
+	 */
+	public double[] vs;
+	/**
+	 * The limits the velocities were last solved with, or null if they have not been solved
+	 */
+	public CompiledLimits limits;
+	/**
+	 * The solver mode the velocities were last solved with
+	 */
+	public SolverMode mode;
+
+	/**
+	 * Creates segment data and computes the geometry of every sample.
+	 * 
+	 * @param splines the path being sampled
+	 * @param us the global parameter of each sample
+	 * @param ls the distance between consecutive samples
+	 */
+	public SegmentData(SplinePath splines, double[] us, double[] ls) {
+		this(splines, us, ls, null, 0);
+	}
+
+	/**
+	 * Creates segment data, copying the geometry of leading samples that have not changed.
+	 * 
+	 * @param splines the path being sampled
+	 * @param us the global parameter of each sample
+	 * @param ls the distance between consecutive samples
+	 * @param reuse previous segment data with the same leading samples, or null
+	 * @param reuseCount the number of leading samples to copy from reuse
+	 */
+	public SegmentData(SplinePath splines, double[] us, double[] ls, SegmentData reuse, int reuseCount) {
+		int n = us.length;
+		this.us = us;
+		this.ls = ls;
+		ds = new double[n];
+		xs = new double[n];
+		ys = new double[n];
+		hs = new double[n];
+		ks = new double[n];
+		vs = new double[n];
+
+		// Distances
+		for(int i = 0; i < n-1; i++) {
+			ds[i+1] = ds[i] + ls[i];
+		}
+
+		// Geometry
+		int start = reuse == null ? 0 : Math.min(reuseCount, n);
+		if(start > 0) {
+			System.arraycopy(reuse.xs, 0, xs, 0, start);
+			System.arraycopy(reuse.ys, 0, ys, 0, start);
+			System.arraycopy(reuse.hs, 0, hs, 0, start);
+			System.arraycopy(reuse.ks, 0, ks, 0, start);
+		}
+		splines.getPoints(us, start, n, xs, ys);
+		splines.getHeadings(us, start, n, hs);
+		splines.getCurvatures(us, start, n, ks);
+	}
+
+	/**
+	 * Creates empty segment data.
+	 * 
+	 * @param n the number of samples
+	 */
+	private SegmentData(int n) {
+		us = new double[n];
+		ls = new double[n-1];
+		ds = new double[n];
+		xs = new double[n];
+		ys = new double[n];
+		hs = new double[n];
+		ks = new double[n];
+		vs = new double[n];
+	}
+
+	/**
+	 * Creates coarser segment data by keeping every factor-th sample, along with the last sample.
+	 * 
+	 * @param factor the number of samples merged into each coarse interval
+	 * @return the decimated segment data
+	 */
+	public SegmentData decimate(int factor) {
+		int n = us.length;
+		int m = (n-1 + factor/2)/factor + 1;
+		SegmentData coarse = new SegmentData(m);
+		for(int j = 0; j < m; j++) {
+			int i = j < m-1 ? j*factor : n-1;
+			coarse.us[j] = us[i];
+			coarse.ds[j] = ds[i];
+			coarse.xs[j] = xs[i];
+			coarse.ys[j] = ys[i];
+			coarse.hs[j] = hs[i];
+			coarse.ks[j] = ks[i];
+		}
+		for(int j = 0; j < m-1; j++) {
+			coarse.ls[j] = coarse.ds[j+1] - coarse.ds[j];
+		}
+		return coarse;
+	}
+
+	/**
+	 * Gets the number of samples.
+	 * 
+	 * @return the number of samples
+	 */
+	public int size() {
+		return us.length;
+	}
+}
@@ -0,0 +1,23 @@
+package com.tigerhuang.motion_profile2;
+
+/**
+ * Possible velocity solver modes
+ * 
+ * @author Tiger Huang
+ *
+ */
+enum SolverMode {
+	ITERATIVE("Iterative"), EXACT("Exact"), REACHABILITY("Reachability"), MULTIGRID("Multigrid");
+
+	// Name shown in the settings panel
+	private final String label;
+
+	SolverMode(String label) {
+		this.label = label;
+	}
+
+	@Override
+	public String toString() {
+		return label;
+	}
+}
@@ -0,0 +1,25 @@
+package com.tigerhuang.motion_profile2;
+
+/**
+ * Observer of a running velocity solve, which may also cancel it
+ * 
+ * @author Tiger Huang
+ *
+ */
+public interface SolverMonitor {
+	/**
+	 * Checks whether the solve is no longer needed.
+	 * 
+	 * @return Whether the solver should stop
+	 */
+	boolean isCancelled();
+
+	/**
+	 * Reports the progress of the iterative solver after each sweep.
+	 * 
+	 * @param iteration The number of sweeps completed
+	 * @param residual The largest velocity adjustment made in the sweep (length/s)
+	 * @param changed The number of segments adjusted in the sweep
+	 */
+	void progress(int iteration, double residual, int changed);
+}
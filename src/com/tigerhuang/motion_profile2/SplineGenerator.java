@@ -1,110 +1,280 @@
 package com.tigerhuang.motion_profile2;
 
+import java.util.ArrayList;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
 /**
  * Contains several utility methods for converting waypoints into profiles
  *
  * @author Tiger Huang
  */
 public class SplineGenerator {
+	// Number of fine samples in each interval of the coarse grid used in MULTIGRID mode
+	private static final int MULTIGRID_FACTOR = 16;
+	// Number of samples swept by each task of the parallel iterative solver, which does not depend on the machine
+	private static final int PARALLEL_BLOCK = 512;
+	// Smallest decrease in velocity that keeps the jerk limiter running another round (length/s)
+	private static final double JERK_TOLERANCE = 1e-6;
+	// Lowest velocity the jerk limiter may lower a sample between the ends to, so the robot never stops mid path (length/s)
+	private static final double JERK_MIN_VELOCITY = 1e-3;
+
 	/**
-	 * Creates a list of QuinticBeziers from a list of waypoints
+	 * Creates a path of QuinticBeziers from a list of waypoints
 	 * There must be at least 2 waypoints
 	 *
 	 * @param waypoints an array of waypoints to use
-	 * @return an array of QuinticBeziers that satisfies the waypoints
+	 * @return a path of QuinticBeziers that satisfies the waypoints
 	 */
-	public static QuinticBezier[] splinesFromWaypoints(Waypoint[] waypoints) {
+	public static SplinePath splinesFromWaypoints(Waypoint[] waypoints) {
 		QuinticBezier[] splines = new QuinticBezier[waypoints.length - 1];
 		for(int i = 0; i < splines.length; i++) {
 			Waypoint wp1 = waypoints[i];
 			Waypoint wp2 = waypoints[i+1];
 			splines[i] = new QuinticBezier(wp1, wp2);
 		}
-		return splines;
+		return new SplinePath(splines);
+	}
+
+	/**
+	 * Rebuilds the splines next to a single changed waypoint
+	 * The number of waypoints must not have changed
+	 *
+	 * @param splines The path built from the waypoints before the change
+	 * @param waypoints an array of waypoints to use
+	 * @param index the index of the changed waypoint
+	 * @return a path of QuinticBeziers that satisfies the waypoints
+	 */
+	public static SplinePath updateSplines(SplinePath splines, Waypoint[] waypoints, int index) {
+		QuinticBezier[] segments = new QuinticBezier[waypoints.length - 1];
+		for(int i = 0; i < segments.length; i++) {
+			if(i == index-1 || i == index) {
+				segments[i] = new QuinticBezier(waypoints[i], waypoints[i+1]);
+			}
+			else {
+				segments[i] = splines.getSegment(i);
+			}
+		}
+		return new SplinePath(segments);
 	}
 
 	/**
 	 * Performs arc length parameterization
 	 * 
+	 * Sample positions are looked up in the arc length tables of the splines,
+	 * so changing the sample length does not require integrating the curve again.
+	 * 
+	 * @param splines The path being parameterized
 	 * @param sampleLength The target arc length of the output segments
-	 * @return An array of arrays. The list of arrays is given below.<br>
-	 * 0. Times (length n rounded up to nearest multiple of 1024)<br>
-	 * 1. Distance between times (length n-1)<br>
-	 * 3. Velocities at times [uninitialized] (length n)
+	 * @return The samples, with velocities uninitialized
+	 */
+	public static SegmentData uniformLengthSegmentData(SplinePath splines, double sampleLength) {
+		return parameterize(splines, sampleLength, null, 0);
+	}
+
+	/**
+	 * Performs arc length parameterization, optionally splitting the work across cores
+	 * 
+	 * In parallel mode, the arc length tables of the splines are built concurrently,
+	 * then each spline places the samples that fall on it into its own buffer on
+	 * the common fork-join pool. The buffers are stitched together in order, and
+	 * the end of the path is handled the same way as the serial version.
+	 * 
+	 * @param splines The path being parameterized
+	 * @param sampleLength The target arc length of the output segments
+	 * @param parallel Whether to use the fork-join pool
+	 * @return The samples, with velocities uninitialized
 	 */
-	public static double[][] uniformLengthSegmentData(QuinticBezier[] splines, double sampleLength) {
-		double t = 0;                 // Time
-		int i = 0;                    // Current index
-		int ci = 1024;                // Capacity increment
-		double[] ts = new double[ci]; // Accumulator
-		for(;;) {
-			// Add current time
-			ts[i++] = t;
-			if(i >= ts.length) {
-				double[] tso = ts;
-				ts = new double[tso.length + ci];
-				System.arraycopy(tso, 0, ts, 0, tso.length);
-			}
-
-			// Prepare for next step
-			double rt = t%1;                                  // Relative time
-			QuinticBezier s = splines[(int)t];                // Current spline
-			double dl = Math.hypot(s.getDX(rt), s.getDY(rt)); // Length per time
-			double dt = sampleLength/dl;                      // Time change
-
-			// Check for end condition
-			if(t+dt*2 >= splines.length) {
-				// Add additional point as long as the last segment will be more than half the target length
-				if((1-rt)*dl > sampleLength*3/2) {
-					ts[i++] = t+dt;
-					if(i >= ts.length) {
-						double[] tso = ts;
-						ts = new double[tso.length + ci];
-						System.arraycopy(tso, 0, ts, 0, tso.length);
+	public static SegmentData uniformLengthSegmentData(SplinePath splines, double sampleLength, boolean parallel) {
+		int count = splines.getSegmentCount();
+		if(!parallel || count < 2) {
+			return uniformLengthSegmentData(splines, sampleLength);
+		}
+
+		// Build arc length tables
+		ArrayList<RecursiveAction> tasks = new ArrayList<>();
+		for(int i = 0; i < count; i++) {
+			QuinticBezier segment = splines.getSegment(i);
+			tasks.add(new RecursiveAction() {
+				@Override
+				protected void compute() {
+					segment.getLength();
+				}
+			});
+		}
+		ForkJoinTask.invokeAll(tasks);
+
+		// Find the layout of the samples
+		double length = splines.getLength();
+		int m = lastFullSample(length, sampleLength);
+		boolean extra = length - m*sampleLength > sampleLength*3/2;
+		int n = m + (extra ? 3 : 2);
+		int last = extra ? m+1 : m; // Index of the last evenly spaced sample
+
+		// Place the samples on each spline
+		double[][] buffers = new double[count][];
+		int[] starts = new int[count+1];
+		for(int i = 0; i <= count; i++) {
+			starts[i] = i == count ? last+1 : firstSampleAt(splines.getOffset(i), sampleLength, last+1);
+		}
+		tasks.clear();
+		for(int i = 0; i < count; i++) {
+			int index = i;
+			tasks.add(new RecursiveAction() {
+				@Override
+				protected void compute() {
+					QuinticBezier segment = splines.getSegment(index);
+					double offset = splines.getOffset(index);
+					double[] buffer = new double[Math.max(starts[index+1] - starts[index], 0)];
+					for(int k = 0; k < buffer.length; k++) {
+						buffer[k] = index + segment.getParameter((starts[index]+k)*sampleLength - offset);
 					}
+					buffers[index] = buffer;
 				}
-				// Add final point
-				ts[i++] = Math.nextDown(splines.length);
-				break;
-			}
+			});
+		}
+		ForkJoinTask.invokeAll(tasks);
 
-			// Normal condition
-			else {
-				t += dt;
-			}
+		// Stitch the buffers together
+		double[] ts = new double[n];
+		for(int i = 0; i < count; i++) {
+			System.arraycopy(buffers[i], 0, ts, starts[i], buffers[i].length);
 		}
+		ts[n-1] = Math.nextDown(count);
 
 		// Generate distances
-		double[] ls = new double[i-1];
-		double x0 = splines[0].getX(0);
-		double y0 = splines[0].getY(0);
-		for(int j = 0; j < ls.length; j++) {
-			double t1 = ts[j+1];
-			QuinticBezier s1 = splines[(int)t1];
-			double x1 = s1.getX(t1%1);
-			double y1 = s1.getY(t1%1);
-			ls[j] = Math.hypot(x1-x0, y1-y0);
-			x0 = x1;
-			y0 = y1;
-		}
-
-		// Generate velocity
-		double[] vs = new double[i];
-
-		// Export arrays
-		double[][] result = new double[3][];
-		result[0] = ts;
-		result[1] = ls;
-		result[2] = vs;
-		return result;
+		double[] ls = new double[n-1];
+		for(int i = 0; i < n-2; i++) {
+			ls[i] = sampleLength;
+		}
+		ls[n-2] = length - (n-2)*sampleLength;
+
+		return new SegmentData(splines, ts, ls);
+	}
+
+	/**
+	 * Performs arc length parameterization after some splines have changed
+	 * 
+	 * Samples before the first changed spline are copied from the previous data.
+	 * The remaining samples are placed using the arc length tables, which are only
+	 * computed for the changed splines.
+	 * 
+	 * @param splineData The samples produced for the path before the change
+	 * @param splines The path being parameterized
+	 * @param sampleLength The target arc length of the output segments (same as before the change)
+	 * @param first The index of the first changed spline
+	 * @return The samples, with velocities uninitialized
+	 */
+	public static SegmentData updateSegmentData(SegmentData splineData, SplinePath splines,
+			double sampleLength, int first) {
+		// Count the samples that lie entirely before the change
+		double[] ts = splineData.us;
+		int count = 0;
+		while(count < ts.length-1 && ts[count+1] < first) {
+			count++;
+		}
+		return parameterize(splines, sampleLength, splineData, count);
+	}
+
+	/**
+	 * Finds the index of the last full length sample before the end condition
+	 * The last segment will then be between half and one and a half the target length
+	 * 
+	 * @param length The arc length of the path
+	 * @param sampleLength The target arc length of the output segments
+	 * @return The index of the sample
+	 */
+	private static int lastFullSample(double length, double sampleLength) {
+		int m = (int)Math.max(0, Math.ceil(length/sampleLength - 2));
+		while(m > 0 && (m+1)*sampleLength >= length) {
+			m--;
+		}
+		while((m+2)*sampleLength < length) {
+			m++;
+		}
+		return m;
+	}
+
+	/**
+	 * Finds the first evenly spaced sample at or after an arc length
+	 * 
+	 * @param s The arc length
+	 * @param sampleLength The target arc length of the output segments
+	 * @param limit The largest index to return
+	 * @return The index of the sample
+	 */
+	private static int firstSampleAt(double s, double sampleLength, int limit) {
+		int k = (int)Math.max(0, Math.ceil(s/sampleLength));
+		while(k > 0 && (k-1)*sampleLength >= s) {
+			k--;
+		}
+		while(k*sampleLength < s) {
+			k++;
+		}
+		return Math.min(k, limit);
+	}
+
+	/**
+	 * Places samples evenly along the path
+	 * 
+	 * @param splines The path being parameterized
+	 * @param sampleLength The target arc length of the output segments
+	 * @param reuse Samples whose leading full length samples are still valid, or null
+	 * @param reuseCount The number of samples to copy from reuse
+	 * @return The samples, with velocities uninitialized
+	 */
+	private static SegmentData parameterize(SplinePath splines, double sampleLength,
+			SegmentData reuse, int reuseCount) {
+		double length = splines.getLength();
+		int m = lastFullSample(length, sampleLength);
+		boolean extra = length - m*sampleLength > sampleLength*3/2;
+		int n = m + (extra ? 3 : 2);
+
+		// Generate times and distances
+		double[] ts = new double[n];
+		double[] ls = new double[n-1];
+		int start = Math.min(reuseCount, m+1);
+		if(start > 0) {
+			System.arraycopy(reuse.us, 0, ts, 0, start);
+		}
+		for(int i = start; i <= m; i++) {
+			ts[i] = splines.getParameter(i*sampleLength);
+		}
+		for(int i = 0; i < m; i++) {
+			ls[i] = sampleLength;
+		}
+		if(extra) {
+			ts[m+1] = splines.getParameter((m+1)*sampleLength);
+			ls[m] = sampleLength;
+		}
+		ts[n-1] = Math.nextDown(splines.getSegmentCount());
+		ls[n-2] = length - (n-2)*sampleLength;
+
+		return new SegmentData(splines, ts, ls, reuse, start);
 	}
 
 	/**
 	 * Generates a velocity profile with the given data.
 	 * 
-	 * @param splineData The spline data produced by uniformLengthSegmentData
-	 * @param splines The array of splines being used
+	 * In EXACT mode the velocity and acceleration limits are solved directly by one forward and one backward pass,
+	 * and the iterative solver is only run afterwards if any voltage limits are present.
+	 * In REACHABILITY mode the voltage limits are also handled by the passes, each of which
+	 * moves to the fastest velocity the next sample can reach without exceeding the voltage limit.
+	 * MULTIGRID mode works like EXACT mode, but first solves the voltage limits on a decimated grid,
+	 * where every sweep is much cheaper. The fine grid then keeps that solution and is only swept around
+	 * the intervals that break their voltage limit, which the coarse grid stepped over.
+	 * The sweeps of both grids are reported to the monitor as one count.
+	 * When warm starting, the velocities from the previous solve of the same samples are kept
+	 * and only the samples around bounds that changed are solved again.
+	 * If a jerk limit is given, the solved velocities are then lowered until the acceleration
+	 * changes smoothly, which disables warm starting since the whole path is affected.
+	 * 
+	 * @param splineData The samples produced by uniformLengthSegmentData
 	 * @param limits The array of limits to be applied
+	 * @param mode The solver used for the velocity and acceleration limits
+	 * @param warm Whether to start from the velocities of the previous solve
+	 * @param parallel Whether to run the forward and backward passes concurrently,
+	 * and sweep blocks of the iterative solver concurrently, which gives the same velocities as solving serially
 	 * @param wheelbase The distance between the robot's wheels
 	 * @param max_iterations The maximum number of runs allowed for the iterative solver
 	 * @param adjust_scale The scale factor for the adjustment when voltage limiting
@@ -116,173 +286,776 @@ public class SplineGenerator {
 	 * @param v_tau The velocity time constant for linear motion at max voltage
 	 * @param w_max The maximum angular velocity
 	 * @param w_tau The velocity time constant for angular motion at max voltage
-	 * @return None
+	 * @param j_max The maximum linear jerk, or 0 for no jerk limit
+	 * @param monitor Receives the progress of the iterative solver and may cancel it, or null
+	 * @return Whether the solve finished without being cancelled
+	 * @throws IllegalStateException If the solve produced a velocity that is negative or not finite
 	 */
-	public static void generateVelocityProfile(double[][] splineData,
-			QuinticBezier[] splines, Limit[] limits,
+	public static boolean generateVelocityProfile(SegmentData splineData,
+			Limit[] limits, SolverMode mode, boolean warm, boolean parallel,
 			double wheelbase, double smoothing,
 			int max_iterations, double adjust_scale, double adjust_offset,
 			double v_initial, double v_final,
 			double v_max, double v_tau,
-			double w_max, double w_tau) {
+			double w_max, double w_tau, double j_max,
+			SolverMonitor monitor) {
 
-		// Explode array
-		int l = splineData[2].length;
-		double[] ts = splineData[0];
-		double[] ls = splineData[1];
-		double[] vs = splineData[2];
+		// Explode data
+		int l = splineData.size();
+		double[] ls = splineData.ls;
+		double[] vs = splineData.vs;
 		double[] vsn = new double[l];
 
-		// Generate curvatures
-		double[] ks = new double[l];
-		for(int j = 0; j < ks.length; j++) {
-			double t = ts[j];
-			ks[j] = splines[(int)t].getCurvature(t%1);
+		// Resolve limits onto the samples
+		CompiledLimits compiled = new CompiledLimits(splineData, limits, wheelbase,
+				v_initial, v_final, v_max, v_tau, w_max, w_tau);
+		double[] maxVel = compiled.maxVel;
+		boolean reachability = mode == SolverMode.REACHABILITY && compiled.voltage;
+		if(reachability) {
+			capHoldVoltage(maxVel, compiled);
 		}
 
-		// Sweep forward and backwards until a cycle does not find any more points to adjust
+		// Window of samples that need to be solved again
+		int lo = 0;
+		int hi = l-1;
 		boolean first = true;
+		boolean multigrid = mode == SolverMode.MULTIGRID && compiled.voltage && l >= 32*MULTIGRID_FACTOR;
+		boolean jerk = j_max > 0;
+		if(warm && splineData.limits != null && splineData.mode == mode && !multigrid && !jerk) {
+			int[] window = compiled.difference(splineData.limits);
+			if(window == null) {
+				return true;
+			}
+			lo = window[0];
+			hi = window[1];
+
+			// Samples below their cap may have been held down by the old bounds,
+			// which the exact passes can only do along a ramp leading away from the window
+			boolean ramp = mode == SolverMode.REACHABILITY || (mode != SolverMode.ITERATIVE && !compiled.voltage);
+			while(lo > 0 && vs[lo-1] < maxVel[lo-1] && (!ramp || vs[lo-1] >= vs[lo])) {
+				lo--;
+			}
+			while(hi < l-1 && vs[hi+1] < maxVel[hi+1] && (!ramp || vs[hi+1] >= vs[hi])) {
+				hi++;
+			}
+			first = false;
+		}
+		// Sweeps already reported by the coarse solve, which the fine sweeps are counted on from
+		final int[] offset = new int[1];
+		if(multigrid) {
+			// Solve on a coarser grid first, with the smoothing scaled down by the square of the factor
+			// so that it spreads over the same distance along the path as it does on the fine grid
+			SegmentData coarse = splineData.decimate(MULTIGRID_FACTOR);
+			SolverMonitor coarseMonitor = monitor == null ? null : new SolverMonitor() {
+				@Override
+				public boolean isCancelled() {
+					return monitor.isCancelled();
+				}
+
+				@Override
+				public void progress(int iteration, double residual, int changed) {
+					offset[0] = iteration;
+					monitor.progress(iteration, residual, changed);
+				}
+			};
+			if(!generateVelocityProfile(coarse, limits, SolverMode.EXACT, false, parallel,
+					wheelbase, smoothing/(MULTIGRID_FACTOR*MULTIGRID_FACTOR), max_iterations, adjust_scale, adjust_offset,
+					v_initial, v_final, v_max, v_tau, w_max, w_tau, 0, coarseMonitor)) {
+				splineData.limits = null;
+				return false;
+			}
+
+			// Prolongate onto the fine grid as the starting point, interpolating v^2 so acceleration stays constant
+			double[] ds = splineData.ds;
+			double[] cvs = coarse.vs;
+			for(int i = 0, j = 0; i < l; i++) {
+				while(j < coarse.size()-2 && coarse.ds[j+1] < ds[i]) {
+					j++;
+				}
+				double f = (ds[i]-coarse.ds[j])/coarse.ls[j];
+				double b = cvs[j]*cvs[j] + f*(cvs[j+1]*cvs[j+1]-cvs[j]*cvs[j]);
+				vs[i] = Math.min(maxVel[i], Math.sqrt(Math.max(b, 0)));
+			}
+			first = false;
+		}
+		else {
+			System.arraycopy(maxVel, lo, vs, lo, hi-lo+1);
+		}
+		// Velocities lowered for the jerk limit cannot be warm started from
+		splineData.limits = jerk ? null : compiled;
+		splineData.mode = mode;
+
+		if(mode != SolverMode.ITERATIVE) {
+			// Forward and backward passes, stopping once outside the window and nothing changes
+			if(parallel) {
+				// Running the passes on separate copies and taking the minimum matches running them one after the other
+				// only because every reachable velocity is at least the velocity it is reached from. Accelerating
+				// always allows that, and capHoldVoltage lowers velocities until each interval can hold them under
+				// its voltage limit. Without that cap, a pass could lower a sample the other pass then reaches from.
+				final int from = lo;
+				final int to = hi;
+				final double[] backward = vs.clone();
+				final int[] range = new int[2];
+				ArrayList<RecursiveAction> tasks = new ArrayList<>();
+				tasks.add(new RecursiveAction() {
+					@Override
+					protected void compute() {
+						range[1] = forwardPass(vs, from, to, ls, compiled, reachability);
+					}
+				});
+				tasks.add(new RecursiveAction() {
+					@Override
+					protected void compute() {
+						range[0] = backwardPass(backward, from, to, ls, compiled, reachability);
+					}
+				});
+				ForkJoinTask.invokeAll(tasks);
+				lo = range[0];
+				hi = range[1];
+				for(int i = lo; i <= hi; i++) {
+					vs[i] = Math.min(vs[i], backward[i]);
+				}
+			}
+			else {
+				hi = forwardPass(vs, lo, hi, ls, compiled, reachability);
+				lo = backwardPass(vs, lo, hi, ls, compiled, reachability);
+			}
+
+			// Only the voltage limits need the iterative solver, unless they were already reached
+			if(!compiled.voltage || reachability) {
+				if(jerk && !limitJerk(vs, ls, compiled, j_max, max_iterations, monitor)) {
+					return false;
+				}
+				checkVelocities(vs);
+				return true;
+			}
+			first = false;
+		}
+
+		if(multigrid) {
+			// Only sweep around the intervals that break their voltage limit on the fine grid, which the coarse grid
+			// stepped over, since sweeping the whole path would keep smoothing down the coarse solution everywhere
+			// and take as many sweeps as EXACT mode
+			int sweeps = offset[0];
+			for(int i = 0; i < l-1; i++) {
+				if(voltageRatio(i, vs, compiled) <= 1) {
+					continue;
+				}
+				int from = Math.max(i-MULTIGRID_FACTOR, 0);
+				int to = Math.min(i+1+MULTIGRID_FACTOR, l-1);
+				for(int j = i+1; j < to; j++) {
+					// Merge breaks closer together than a coarse interval into one neighbourhood
+					if(voltageRatio(j, vs, compiled) > 1) {
+						to = Math.min(j+1+MULTIGRID_FACTOR, l-1);
+					}
+				}
+				int done = sweep(vs, vsn, from, to, false, max_iterations, sweeps, ls, compiled, parallel,
+						smoothing, v_max, adjust_scale, adjust_offset, monitor);
+				if(done < 0) {
+					// The partially solved velocities cannot be warm started from
+					splineData.limits = null;
+					return false;
+				}
+				sweeps += done;
+				i = to-1;
+			}
+		}
+		else if(sweep(vs, vsn, lo, hi, first, max_iterations, 0, ls, compiled, parallel,
+				smoothing, v_max, adjust_scale, adjust_offset, monitor) < 0) {
+			// The partially solved velocities cannot be warm started from
+			splineData.limits = null;
+			return false;
+		}
+		if(jerk && !limitJerk(vs, ls, compiled, j_max, max_iterations, monitor)) {
+			return false;
+		}
+		checkVelocities(vs);
+		return true;
+	}
+
+	/**
+	 * Sweeps the iterative solver forward and backwards over a window until a cycle does not find any more points to adjust,
+	 * growing the window while changes propagate past it.
+	 * 
+	 * @param vs The velocities to solve, which outside the window must already be solved
+	 * @param vsn A buffer the size of vs
+	 * @param lo The first sample of the window
+	 * @param hi The last sample of the window
+	 * @param first Whether to start every sample in the window from its velocity cap
+	 * @param iterations The maximum number of sweeps
+	 * @param offset The number of sweeps already reported to the monitor
+	 * @param ls The length of each interval
+	 * @param compiled The limits compiled onto the samples
+	 * @param parallel Whether to sweep blocks concurrently, which gives the same velocities as sweeping serially
+	 * @param smoothing The smoothing done between adjustment rounds
+	 * @param v_max The maximum linear velocity
+	 * @param adjust_scale The scale factor for the adjustment when voltage limiting
+	 * @param adjust_offset The offset for the adjustment when voltage limiting
+	 * @param monitor Receives the progress of the sweeps and may cancel them, or null
+	 * @return The number of sweeps run, or -1 if cancelled
+	 */
+	private static int sweep(double[] vs, double[] vsn, int lo, int hi, boolean first, int iterations, int offset,
+			double[] ls, CompiledLimits compiled, boolean parallel, double smoothing,
+			double v_max, double adjust_scale, double adjust_offset, SolverMonitor monitor) {
+		int l = vs.length;
+		double[] maxVel = compiled.maxVel;
+		System.arraycopy(vs, 0, vsn, 0, l);
+		// Velocities before each parallel sweep, the velocity carried into each interval, and how much each interval lowered
+		final double[] before = parallel ? new double[l] : null;
+		final double[] carried = parallel ? new double[l-1] : null;
+		final double[] decreases = parallel ? new double[l-1] : null;
 		boolean even = true;
 		boolean changed = true;
-		for(int z = 0; z < max_iterations; z++) {
+		int z = 0;
+		for(; z < iterations; z++) {
 			// Handle loop exit
 			if(even) {
 				if(!changed) {
-					System.out.println("Exited early at iteration: " + z);
 					break;
 				}
 				changed = false;
 			}
+			if(monitor != null && monitor.isCancelled()) {
+				return -1;
+			}
+			double residual = 0;
+			int count = 0;
 
 			// Handle simultaneous update
-			System.arraycopy(vs, 0, vsn, 0, l);
+			System.arraycopy(vs, lo, vsn, lo, hi-lo+1);
 
-			// Global maximum velocity
-			for(int i = 0; i < l; i++) {
-				double v = Math.min(v_max/(1+Math.abs(ks[i])*wheelbase/2), w_max/Math.abs(ks[i]));
-				if(first || v < vsn[i]) {
-					vsn[i] = v;
+			// Velocity caps
+			for(int i = lo; i <= hi; i++) {
+				if(first || maxVel[i] < vsn[i]) {
+					residual = Math.max(residual, vsn[i]-maxVel[i]);
+					vsn[i] = maxVel[i];
 					changed = true;
 				}
 			}
-			vsn[0] = Math.min(vsn[0], v_initial);
-			vsn[l-1] = Math.min(vsn[l-1], v_final);
 			first = false;
 
-			// Velocity limits
-			for(Limit limit:limits) {
-				if(limit.type == LimitType.VELOCITY) {
-					for(int i = 0; i < l; i++) {
-						if(ts[i] < limit.t1) {
-							continue;
-						}
-						if(ts[i] > limit.t2) {
-							break;
-						}
-						if(vsn[i] > limit.limit) {
-							vsn[i] = limit.limit;
-							changed = true;
+			if(parallel && hi-lo >= 2*PARALLEL_BLOCK) {
+				// Sweep blocks that own disjoint samples concurrently, each starting from the velocities before the sweep
+				// and recording the velocity it carries into every interval
+				final int from = lo;
+				final int to = hi;
+				final int blocks = (to-from)/PARALLEL_BLOCK + 1;
+				final boolean forward = even;
+				System.arraycopy(vsn, from, before, from, to-from+1);
+				ArrayList<RecursiveAction> tasks = new ArrayList<>();
+				for(int b = 0; b < blocks; b++) {
+					int start = from + b*PARALLEL_BLOCK;
+					int end = Math.min(start+PARALLEL_BLOCK-1, to);
+					tasks.add(new RecursiveAction() {
+						@Override
+						protected void compute() {
+							for(int k = start; k < end; k++) {
+								int i = forward ? k : start+end-1-k;
+								carried[i] = forward ? vsn[i] : vsn[i+1];
+								decreases[i] = adjustInterval(i, vsn, ls, compiled, v_max, adjust_scale, adjust_offset);
+							}
 						}
-					}
+					});
 				}
-			}
+				ForkJoinTask.invokeAll(tasks);
 
-			// Processing loop
-			int i = even ? 0 : l-2;
-			for(;;) {
-				// Check acceleration limits
-				double lowest = 2*v_max/v_tau;
-				for(Limit limit:limits) {
-					if(ts[i] >= limit.t1 && ts[i+1] <= limit.t2) {
-						if(limit.type == LimitType.ACCELERATION) {
-							if(limit.limit < lowest) {
-								lowest = limit.limit;
-							}
+				// Apply the interval leading into each block in the order of the sweep. If it changes the velocity carried
+				// into the block, the block is swept again until it carries the same velocity as the concurrent sweep did,
+				// after which the rest of the block is unchanged, so the result is the same as the serial loop
+				for(int k = 0; k < blocks; k++) {
+					int b = forward ? k : blocks-1-k;
+					int start = from + b*PARALLEL_BLOCK;
+					int end = Math.min(start+PARALLEL_BLOCK-1, to);
+					if(forward && start > 0) {
+						double kept = vsn[start];
+						vsn[start] = before[start];
+						decreases[start-1] = adjustInterval(start-1, vsn, ls, compiled, v_max, adjust_scale, adjust_offset);
+						int i = start;
+						for(; i < end && vsn[i] != carried[i]; i++) {
+							kept = vsn[i+1];
+							vsn[i+1] = before[i+1];
+							decreases[i] = adjustInterval(i, vsn, ls, compiled, v_max, adjust_scale, adjust_offset);
+						}
+						if(i < end) {
+							vsn[i] = kept;
 						}
 					}
-				}
-				double vmin = Math.min(vsn[i], vsn[i+1]);
-				double vmax = Math.sqrt(vmin*vmin + 2*lowest*ls[i]);
-				if(vmax < vsn[i]) {
-					vsn[i] = vmax;
-					changed = true;
-				}
-				if(vmax < vsn[i+1]) {
-					vsn[i+1] = vmax;
-					changed = true;
-				}
-
-				// Check voltage limits
-				lowest = Double.MAX_VALUE;
-				for(Limit limit:limits) {
-					if(ts[i] >= limit.t1 && ts[i+1] <= limit.t2) {
-						if(limit.type == LimitType.VOLTAGE) {
-							if(limit.limit < lowest) {
-								lowest = limit.limit;
-							}
+					else if(!forward && end < l-1) {
+						double kept = vsn[end];
+						vsn[end] = before[end];
+						decreases[end] = adjustInterval(end, vsn, ls, compiled, v_max, adjust_scale, adjust_offset);
+						int i = end-1;
+						for(; i >= start && vsn[i+1] != carried[i]; i--) {
+							kept = vsn[i];
+							vsn[i] = before[i];
+							decreases[i] = adjustInterval(i, vsn, ls, compiled, v_max, adjust_scale, adjust_offset);
+						}
+						if(i >= start) {
+							vsn[i+1] = kept;
 						}
 					}
 				}
-				if(lowest < Double.MAX_VALUE) {
-					double A = v_tau/(2*ls[i]*v_max);
-					double B = w_tau*(ks[i]+ks[i+1])/(4*ls[i]*w_max);
-					double C = w_tau*(ks[i+1]-ks[i])/(4*ls[i]*w_max);
-					double D = 1/(2*v_max);
-					double E = wheelbase*(ks[i]+ks[i+1])/(8*v_max);
-					double v1 = vsn[i];
-					double v2 = vsn[i+1];
-					double vl = (A-B)*(v2*v2-v1*v1) - C*(v1+v2)*(v1+v2) + (D-E)*(v1+v2);
-					double vr = (A+B)*(v2*v2-v1*v1) + C*(v1+v2)*(v1+v2) + (D+E)*(v1+v2);
-					if(Math.abs(vl) > lowest) {
-						vsn[i] -= vsn[i] / v_max * adjust_scale * (Math.abs(vl)/lowest-adjust_offset);
-						vsn[i+1] -= vsn[i+1] / v_max * adjust_scale * (Math.abs(vl)/lowest-adjust_offset);
-						changed = true;
-					}
-					if(Math.abs(vr) > lowest) {
-						vsn[i] -= vsn[i] / v_max * adjust_scale * (Math.abs(vr)/lowest-adjust_offset);
-						vsn[i+1] -= vsn[i+1] / v_max * adjust_scale * (Math.abs(vr)/lowest-adjust_offset);
-						changed = true;
+				int firstInterval = forward ? Math.max(from-1, 0) : from;
+				int lastInterval = forward ? to-1 : Math.min(to, l-2);
+				for(int i = firstInterval; i <= lastInterval; i++) {
+					if(decreases[i] > 0) {
+						residual = Math.max(residual, decreases[i]);
+						count++;
+						lo = Math.min(lo, i);
+						hi = Math.max(hi, i+1);
 					}
 				}
 
-				// Loop handling
-				if(even) {
-					i++;
-					if(i >= l-1) {
+				// Carry changes on past the far edge of the window
+				int step = forward ? 1 : -1;
+				for(int i = forward ? to : from-1; i >= 0 && i < l-1; i += step) {
+					double r = adjustInterval(i, vsn, ls, compiled, v_max, adjust_scale, adjust_offset);
+					if(r <= 0) {
 						break;
 					}
+					residual = Math.max(residual, r);
+					count++;
+					lo = Math.min(lo, i);
+					hi = Math.max(hi, i+1);
+				}
+				if(count > 0) {
+					changed = true;
 				}
-				else {
-					i--;
-					if(i < 0) {
+			}
+			else {
+				// Processing loop, growing the window while changes propagate past it
+				int i = even ? Math.max(lo-1, 0) : Math.min(hi, l-2);
+				int step = even ? 1 : -1;
+				for(; i >= 0 && i < l-1; i += step) {
+					double r = adjustInterval(i, vsn, ls, compiled, v_max, adjust_scale, adjust_offset);
+					if(r > 0) {
+						residual = Math.max(residual, r);
+						count++;
+						changed = true;
+						lo = Math.min(lo, i);
+						hi = Math.max(hi, i+1);
+					}
+					else if(even ? i >= hi : i < lo) {
 						break;
 					}
 				}
 			}
 
 			// Handle simultaneous update
-			vs[0] = vsn[0];
-			vs[l-1] = vsn[l-1];
-			for(i = 1; i < l-1; i++) {
+			if(lo == 0) {
+				vs[0] = vsn[0];
+			}
+			if(hi == l-1) {
+				vs[l-1] = vsn[l-1];
+			}
+			for(int i = Math.max(lo, 1); i <= Math.min(hi, l-2); i++) {
 				vs[i] = smoothing/2*vsn[i-1]+(1-smoothing)*vsn[i]+smoothing/2*vsn[i+1];
 			}
-			for(i = 0; i < l; i++) {
+			for(int i = lo; i <= hi; i++) {
 				if(vs[i] < 0) {
 					vs[i] = 1;
 				}
 			}
 			even = !even;
+			if(monitor != null) {
+				monitor.progress(offset+z+1, residual, count);
+			}
+		}
+		return z;
+	}
+
+	/**
+	 * Finds the voltage of the harder driven wheel over one interval as a fraction of its limit.
+	 * 
+	 * @param i The index of the interval
+	 * @param vs The velocities
+	 * @param compiled The limits compiled onto the samples
+	 * @return The fraction, or 0 if the interval has no voltage limit
+	 */
+	private static double voltageRatio(int i, double[] vs, CompiledLimits compiled) {
+		double lowest = compiled.maxVoltage[i];
+		if(lowest == Double.MAX_VALUE) {
+			return 0;
+		}
+		double A = compiled.a[i];
+		double B = compiled.b[i];
+		double C = compiled.c[i];
+		double D = compiled.d[i];
+		double E = compiled.e[i];
+		double v1 = vs[i];
+		double v2 = vs[i+1];
+		double vl = (A-B)*(v2*v2-v1*v1) - C*(v1+v2)*(v1+v2) + (D-E)*(v1+v2);
+		double vr = (A+B)*(v2*v2-v1*v1) + C*(v1+v2)*(v1+v2) + (D+E)*(v1+v2);
+		return Math.max(Math.abs(vl), Math.abs(vr))/lowest;
+	}
+
+	/**
+	 * Makes sure no velocity that would break the time parameterization leaves the solver.
+	 * 
+	 * @param vs The solved velocities
+	 */
+	private static void checkVelocities(double[] vs) {
+		for(int i = 0; i < vs.length; i++) {
+			if(!(vs[i] >= 0) || Double.isInfinite(vs[i])) {
+				throw new IllegalStateException("Invalid velocity " + vs[i] + " at sample " + i);
+			}
+		}
+	}
+
+	/**
+	 * Lowers velocities to the fastest constant velocity each interval can hold without exceeding its voltage limit.
+	 * 
+	 * @param vs The velocities to lower
+	 * @param compiled The limits compiled onto the samples
+	 */
+	private static void capHoldVoltage(double[] vs, CompiledLimits compiled) {
+		double[] maxVoltage = compiled.maxVoltage;
+		double[] cc = compiled.c;
+		double[] cd = compiled.d;
+		double[] ce = compiled.e;
+		for(int i = 0; i < vs.length-1; i++) {
+			if(maxVoltage[i] < Double.MAX_VALUE) {
+				double v = Math.min(
+						reachVoltage(-4*cc[i], 2*(cd[i]-ce[i]), 0, 0, maxVoltage[i]),
+						reachVoltage(4*cc[i], 2*(cd[i]+ce[i]), 0, 0, maxVoltage[i]));
+				vs[i] = Math.min(vs[i], v);
+				vs[i+1] = Math.min(vs[i+1], v);
+			}
+		}
+	}
+
+	/**
+	 * Lowers velocities so each sample can be reached from the one before it,
+	 * stopping once past the window and nothing changes.
+	 * 
+	 * @param vs The velocities to lower
+	 * @param lo The first sample of the window
+	 * @param hi The last sample of the window
+	 * @param ls The length of each interval
+	 * @param compiled The limits compiled onto the samples
+	 * @param reachability Whether the voltage limits are also applied
+	 * @return The last sample that was lowered or in the window
+	 */
+	private static int forwardPass(double[] vs, int lo, int hi, double[] ls, CompiledLimits compiled, boolean reachability) {
+		double[] maxAccel = compiled.maxAccel;
+		double[] maxVoltage = compiled.maxVoltage;
+		double[] ca = compiled.a;
+		double[] cb = compiled.b;
+		double[] cc = compiled.c;
+		double[] cd = compiled.d;
+		double[] ce = compiled.e;
+		for(int i = Math.max(lo-1, 0); i < vs.length-1; i++) {
+			double v = Math.sqrt(vs[i]*vs[i] + 2*maxAccel[i]*ls[i]);
+			if(reachability && maxVoltage[i] < Double.MAX_VALUE) {
+				// Fastest v2 reachable from v1 before either wheel voltage hits the limit
+				double v1 = vs[i];
+				v = Math.min(v, reachVoltage(ca[i]-cb[i]-cc[i], -2*cc[i]*v1 + cd[i]-ce[i],
+						(-ca[i]+cb[i]-cc[i])*v1*v1 + (cd[i]-ce[i])*v1, v1, maxVoltage[i]));
+				v = Math.min(v, reachVoltage(ca[i]+cb[i]+cc[i], 2*cc[i]*v1 + cd[i]+ce[i],
+						(-ca[i]-cb[i]+cc[i])*v1*v1 + (cd[i]+ce[i])*v1, v1, maxVoltage[i]));
+			}
+			if(v < vs[i+1]) {
+				vs[i+1] = v;
+				hi = Math.max(hi, i+1);
+			}
+			else if(i+1 > hi) {
+				break;
+			}
+		}
+		return hi;
+	}
+
+	/**
+	 * Lowers velocities so each sample can slow down to the one after it,
+	 * stopping once past the window and nothing changes.
+	 * 
+	 * @param vs The velocities to lower
+	 * @param lo The first sample of the window
+	 * @param hi The last sample of the window
+	 * @param ls The length of each interval
+	 * @param compiled The limits compiled onto the samples
+	 * @param reachability Whether the voltage limits are also applied
+	 * @return The first sample that was lowered or in the window
+	 */
+	private static int backwardPass(double[] vs, int lo, int hi, double[] ls, CompiledLimits compiled, boolean reachability) {
+		double[] maxAccel = compiled.maxAccel;
+		double[] maxVoltage = compiled.maxVoltage;
+		double[] ca = compiled.a;
+		double[] cb = compiled.b;
+		double[] cc = compiled.c;
+		double[] cd = compiled.d;
+		double[] ce = compiled.e;
+		for(int i = Math.min(hi, vs.length-2); i >= 0; i--) {
+			double v = Math.sqrt(vs[i+1]*vs[i+1] + 2*maxAccel[i]*ls[i]);
+			if(reachability && maxVoltage[i] < Double.MAX_VALUE) {
+				// Fastest v1 that can slow down to v2 before either wheel voltage hits the limit
+				double v2 = vs[i+1];
+				v = Math.min(v, reachVoltage(-ca[i]+cb[i]-cc[i], -2*cc[i]*v2 + cd[i]-ce[i],
+						(ca[i]-cb[i]-cc[i])*v2*v2 + (cd[i]-ce[i])*v2, v2, maxVoltage[i]));
+				v = Math.min(v, reachVoltage(-ca[i]-cb[i]+cc[i], 2*cc[i]*v2 + cd[i]+ce[i],
+						(ca[i]+cb[i]+cc[i])*v2*v2 + (cd[i]+ce[i])*v2, v2, maxVoltage[i]));
+			}
+			if(v < vs[i]) {
+				vs[i] = v;
+				lo = Math.min(lo, i);
+			}
+			else if(i < lo) {
+				break;
+			}
+		}
+		return lo;
+	}
+
+	/**
+	 * Lowers velocities until the acceleration of neighbouring intervals changes by no more than
+	 * the jerk limit over the time between their midpoints, starting and ending at zero acceleration.
+	 * 
+	 * Working with the squared velocities b, where the acceleration is half the slope,
+	 * a drop in acceleration bounds how concave b may be. Adding a function whose slope rises
+	 * by the allowed drop at every sample turns this into b being convex, so the largest
+	 * solution is found directly from the lower convex hull. A rise in acceleration is fixed
+	 * by passes that lower the samples on the side the acceleration rises towards.
+	 * The time between samples is taken from the velocities before each round,
+	 * which only grows as they are lowered. Samples between the ends are never lowered below
+	 * JERK_MIN_VELOCITY, since two stopped samples in a row would take forever to cross.
+	 * The acceleration limits are kept during each round. Since slowing down harder can need more
+	 * voltage, each round ends with the forward and backward passes of REACHABILITY mode,
+	 * and the rounds continue until neither the jerk nor the voltage limits lower anything.
+	 * 
+	 * @param vs The velocities to lower
+	 * @param ls The length of each interval
+	 * @param compiled The limits compiled onto the samples
+	 * @param j_max The maximum linear jerk
+	 * @param max_iterations The maximum number of rounds
+	 * @param monitor Checked for cancellation before each round, or null
+	 * @return Whether the rounds finished without being cancelled
+	 */
+	private static boolean limitJerk(double[] vs, double[] ls, CompiledLimits compiled, double j_max, int max_iterations,
+			SolverMonitor monitor) {
+		int l = vs.length;
+		double[] maxAccel = compiled.maxAccel;
+		double[] bs = new double[l];
+		double[] ss = new double[l];
+		double[] fs = new double[l];
+		double[] dts = new double[l];
+		double[] prev = new double[l];
+		double[] floors = new double[l];
+		int[] hull = new int[l];
+		for(int i = 0; i < l-1; i++) {
+			ss[i+1] = ss[i] + ls[i];
+		}
+		for(int i = 1; i < l-1; i++) {
+			floors[i] = JERK_MIN_VELOCITY*JERK_MIN_VELOCITY;
+		}
+		if(compiled.voltage) {
+			// The passes can only keep the voltage limits from velocities that can be held
+			capHoldVoltage(vs, compiled);
+		}
+		for(int z = 0; z < max_iterations; z++) {
+			if(monitor != null && monitor.isCancelled()) {
+				return false;
+			}
+			System.arraycopy(vs, 0, prev, 0, l);
+
+			// Time between the midpoints of the intervals around each sample
+			for(int i = 0; i < l; i++) {
+				bs[i] = vs[i]*vs[i];
+				dts[i] = (i > 0 ? ls[i-1]/(vs[i-1]+vs[i]) : 0) + (i < l-1 ? ls[i]/(vs[i]+vs[i+1]) : 0);
+			}
+
+			// Drops in acceleration, from the lower convex hull of b plus a function rising in slope by 2*j_max*dt
+			double slope = 0;
+			fs[0] = bs[0];
+			for(int i = 1; i < l; i++) {
+				slope += 2*j_max*dts[i-1];
+				fs[i] = bs[i] + (fs[i-1]-bs[i-1]) + slope*ls[i-1];
+			}
+			int h = 0;
+			for(int i = 0; i < l; i++) {
+				while(h >= 2 && (ss[hull[h-1]]-ss[hull[h-2]])*(fs[i]-fs[hull[h-2]])
+						<= (fs[hull[h-1]]-fs[hull[h-2]])*(ss[i]-ss[hull[h-2]])) {
+					h--;
+				}
+				hull[h++] = i;
+			}
+			for(int k = 0; k < h-1; k++) {
+				int i1 = hull[k];
+				int i2 = hull[k+1];
+				for(int i = i1+1; i < i2; i++) {
+					double g = fs[i1] + (fs[i2]-fs[i1])*(ss[i]-ss[i1])/(ss[i2]-ss[i1]);
+					bs[i] = Math.max(bs[i] - (fs[i]-g), floors[i]);
+				}
+			}
+
+			// Rises in acceleration, and drops at the ends where the robot is at rest
+			for(int k = 0; k < 2*l; k++) {
+				// Forward on the first half, backward on the second
+				boolean forward = k < l;
+				int i = forward ? k : 2*l-1-k;
+				double p = i > 0 ? 1/(2*ls[i-1]) : 0;
+				double q = i < l-1 ? 1/(2*ls[i]) : 0;
+				double bp = i > 0 ? bs[i-1] : 0;
+				double bn = i < l-1 ? bs[i+1] : 0;
+				double ap = p*(bs[i]-bp);
+				double an = q*(bn-bs[i]);
+				double limit = j_max*dts[i];
+				if(ap-an > limit) {
+					bs[i] = Math.max((limit + p*bp + q*bn)/(p+q), floors[i]);
+				}
+				else if(forward && i < l-1 && (an+ap > 0 || i == 0) && an-ap > limit) {
+					bs[i+1] = Math.max(bs[i] + (ap+limit)/q, floors[i+1]);
+				}
+				else if(!forward && i > 0 && (an+ap <= 0 || i == l-1) && an-ap > limit) {
+					bs[i-1] = Math.max(bs[i] - (an-limit)/p, floors[i-1]);
+				}
+
+				// Keep the acceleration limits of the intervals being passed into
+				if(forward && i < l-1) {
+					bs[i+1] = Math.min(bs[i+1], bs[i] + 2*maxAccel[i]*ls[i]);
+				}
+				if(!forward && i > 0) {
+					bs[i-1] = Math.min(bs[i-1], bs[i] + 2*maxAccel[i-1]*ls[i-1]);
+				}
+			}
+
+			for(int i = 0; i < l; i++) {
+				vs[i] = Math.min(vs[i], Math.sqrt(bs[i]));
+			}
+
+			// Voltage limits
+			if(compiled.voltage) {
+				forwardPass(vs, 0, l-1, ls, compiled, true);
+				backwardPass(vs, 0, l-1, ls, compiled, true);
+			}
+
+			// Stop once nothing is lowered noticeably
+			boolean changed = false;
+			for(int i = 0; i < l; i++) {
+				if(vs[i] < prev[i]-JERK_TOLERANCE) {
+					changed = true;
+				}
+			}
+			if(!changed) {
+				break;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Applies the acceleration and voltage limits of one interval of the iterative solver.
+	 * 
+	 * @param i The index of the interval
+	 * @param vsn The velocities being adjusted
+	 * @param ls The length of each interval
+	 * @param compiled The limits compiled onto the samples
+	 * @param v_max The maximum linear velocity
+	 * @param adjust_scale The scale factor for the adjustment when voltage limiting
+	 * @param adjust_offset The offset for the adjustment when voltage limiting
+	 * @return The largest decrease of either velocity, or 0 if nothing was adjusted
+	 */
+	private static double adjustInterval(int i, double[] vsn, double[] ls, CompiledLimits compiled,
+			double v_max, double adjust_scale, double adjust_offset) {
+		double v1p = vsn[i];
+		double v2p = vsn[i+1];
+
+		// Check acceleration limits
+		double vmin = Math.min(vsn[i], vsn[i+1]);
+		double vmax = Math.sqrt(vmin*vmin + 2*compiled.maxAccel[i]*ls[i]);
+		if(vmax < vsn[i]) {
+			vsn[i] = vmax;
+		}
+		if(vmax < vsn[i+1]) {
+			vsn[i+1] = vmax;
+		}
+
+		// Check voltage limits
+		double lowest = compiled.maxVoltage[i];
+		if(lowest < Double.MAX_VALUE) {
+			double A = compiled.a[i];
+			double B = compiled.b[i];
+			double C = compiled.c[i];
+			double D = compiled.d[i];
+			double E = compiled.e[i];
+			double v1 = vsn[i];
+			double v2 = vsn[i+1];
+			double vl = (A-B)*(v2*v2-v1*v1) - C*(v1+v2)*(v1+v2) + (D-E)*(v1+v2);
+			double vr = (A+B)*(v2*v2-v1*v1) + C*(v1+v2)*(v1+v2) + (D+E)*(v1+v2);
+			if(Math.abs(vl) > lowest) {
+				vsn[i] -= vsn[i] / v_max * adjust_scale * (Math.abs(vl)/lowest-adjust_offset);
+				vsn[i+1] -= vsn[i+1] / v_max * adjust_scale * (Math.abs(vl)/lowest-adjust_offset);
+			}
+			if(Math.abs(vr) > lowest) {
+				vsn[i] -= vsn[i] / v_max * adjust_scale * (Math.abs(vr)/lowest-adjust_offset);
+				vsn[i+1] -= vsn[i+1] / v_max * adjust_scale * (Math.abs(vr)/lowest-adjust_offset);
+			}
+		}
+		return Math.max(Math.max(v1p-vsn[i], v2p-vsn[i+1]), 0);
+	}
+
+	/**
+	 * Finds how far a velocity can move from x0 before a voltage of the form
+	 * a*x^2 + b*x + c leaves [-limit, limit].
+	 * 
+	 * @param a The quadratic coefficient
+	 * @param b The linear coefficient
+	 * @param c The constant coefficient
+	 * @param x0 The starting velocity, which must be within the limit
+	 * @param limit The voltage limit
+	 * @return The first velocity above x0 where the limit is reached, or infinity if never
+	 */
+	private static double reachVoltage(double a, double b, double c, double x0, double limit) {
+		return Math.min(smallestRoot(a, b, c-limit, x0), smallestRoot(a, b, c+limit, x0));
+	}
+
+	/**
+	 * Finds the smallest root of a*x^2 + b*x + c above x0.
+	 * 
+	 * @param a The quadratic coefficient
+	 * @param b The linear coefficient
+	 * @param c The constant coefficient
+	 * @param x0 The lower bound of the root
+	 * @return The smallest root above x0, or infinity if there is none
+	 */
+	private static double smallestRoot(double a, double b, double c, double x0) {
+		double r1;
+		double r2;
+		if(Math.abs(a) <= 1e-12*(Math.abs(b)+Math.abs(c))) {
+			// Linear
+			r1 = b == 0 ? Double.NaN : -c/b;
+			r2 = Double.NaN;
+		}
+		else {
+			double det = b*b - 4*a*c;
+			if(det < 0) {
+				return Double.POSITIVE_INFINITY;
+			}
+			// Avoid cancellation between b and the root of the determinant
+			double q = -(b + Math.copySign(Math.sqrt(det), b))/2;
+			r1 = q/a;
+			r2 = q == 0 ? Double.NaN : c/q;
+		}
+		double root = Double.POSITIVE_INFINITY;
+		if(r1 > x0) {
+			root = r1;
 		}
+		if(r2 > x0 && r2 < root) {
+			root = r2;
+		}
+		return root;
 	}
 
 	/**
 	 * Generates a time based profile with the given data.
 	 * 
-	 * @param splineData The spline data produced by generateVelocityProfile
-	 * @param splines The array of splines being used
+	 * The curvature and heading are interpolated from the samples rather than evaluated from the splines.
+	 * Use a Profile directly to resample the same velocities to several timesteps,
+	 * or to only compute the channels that are needed.
+	 * 
+	 * @param splineData The samples with velocities filled in by generateVelocityProfile
 	 * @param dt The timestep
 	 * @param wheelbase The distance between the robot's wheels
-	 * @param filter_length The length of the boxcar filter applied at the end in number of timesteps
+	 * @param filter_length The length of the boxcar filter applied at the end in number of timesteps, or 0 for none
 	 * @param v_max The maximum linear velocity
 	 * @param v_tau The velocity time constant for linear motion at max voltage
 	 * @param w_max The maximum angular velocity
@@ -297,128 +1070,10 @@ public class SplineGenerator {
 	 * 6. Left voltage<br>
 	 * 7. Right voltage
 	 */
-	public static double[][] generateTimeParameterizedProfile(double[][] splineData,
-			QuinticBezier[] splines,
+	public static double[][] generateTimeParameterizedProfile(SegmentData splineData,
 			double dt, double wheelbase, int filter_length,
 			double v_max, double v_tau,
 			double w_max, double w_tau) {
-
-		// Explode array
-		int l = splineData[2].length;
-		double[] us = splineData[0];
-		double[] ls = splineData[1];
-		double[] vs = splineData[2];
-
-		// Find times
-		double[] ts = new double[l];
-		ts[0] = 0;
-		for(int i = 0; i < l-1; i++) {
-			ts[i+1] = ts[i] + 2*ls[i] / (vs[i]+vs[i+1]);
-		}
-
-		// Initialize arrays
-		int c = (int)Math.ceil(ts[l-1]/dt);
-		double[] lp = new double[c];
-		double[] ap = new double[c];
-		double[] vl = new double[c];
-		double[] vr = new double[c];
-		double[] uts = new double[c];
-		double[] lv = new double[c];
-		double[] av = new double[c];
-		double[] ks = new double[c];
-		double[] la = new double[c];
-		double[] aa = new double[c];
-
-		// Find time parameterized u, linear position, velocity
-		uts[0] = 0;
-		lv[0] = vs[0];
-		lp[0] = 0;
-		lp[1] = 0;
-		double l0 = 0;
-		for(int i = 0, j = 1; i < l-1 && j < c;) {
-			double t = dt*j;
-			if(ts[i+1] >= t) {
-				double x = (t-ts[i]) / (ts[i+1]-ts[i]);
-				uts[j] = (1-x)*us[i] + x*us[i+1];
-				lv[j] = (1-x)*vs[i] + x*vs[i+1];
-				lp[j] = l0 + x*ls[i];
-				j++;
-			}
-			else {
-				l0 += ls[i];
-				i++;
-			}
-		}
-
-		// Find heading
-		double h0 = splines[0].getHeading(0);
-		ap[0] = 0;
-		for(int j = 1; j < c; j++) {
-			double u = uts[j];
-			ap[j] = splines[(int)u].getHeading(u%1) - h0;
-			if(ap[j]-ap[j-1] > Math.PI) {
-				ap[j] -= Math.PI*2;
-			}
-			if(ap[j]-ap[j-1] < -Math.PI) {
-				ap[j] += Math.PI*2;
-			}
-		}
-
-		// Find curvature and angular velocity
-		for(int j = 0; j < c; j++) {
-			double u = uts[j];
-			ks[j] = splines[(int)u].getCurvature(u%1);
-			av[j] = lv[j] * ks[j];
-		}
-
-		// Find voltages
-		// http://dynref.engr.illinois.edu/rkt.html
-		for(int j = 0; j < c-1; j++) {
-			double dl = lp[j+1] - lp[j];
-			double u1 = uts[j];
-			double k1 = splines[(int)u1].getCurvature(u1%1);
-			double v1 = lv[j];
-			double u2 = uts[j+1];
-			double k2 = splines[(int)u2].getCurvature(u2%1);
-			double v2 = lv[j+1];
-			double A = v_tau/(2*dl*v_max);
-			double B = w_tau*(k1+k2)/(4*dl*w_max);
-			double C = w_tau*(k2-k1)/(4*dl*w_max);
-			double D = 1/(2*v_max);
-			double E = wheelbase*(k1+k2)/(8*v_max);
-			vl[j] = (A-B)*(v2*v2-v1*v1) - C*(v1+v2)*(v1+v2) + (D-E)*(v1+v2);
-			vr[j] = (A+B)*(v2*v2-v1*v1) + C*(v1+v2)*(v1+v2) + (D+E)*(v1+v2);
-		}
-		vl[c-1] = vl[c-2];
-		vr[c-1] = vr[c-2];
-
-		// Find linear and angular acceleration
-		for(int j = 0; j < c-1; j++) {
-			la[j] = (lv[j+1]-lv[j]) / dt;
-			aa[j] = (av[j+1]-av[j]) / dt;
-		}
-		la[c-1] = la[c-2];
-		aa[c-1] = aa[c-2];
-
-		// Apply boxcar filter
-		double[][] unfiltered = {lp, lv, la, ap, av, aa, vl, vr};
-		double[][] result = new double[8][c+filter_length];
-		for(int i = 0; i < 8; i++) {
-			for(int j = 0; j < c+filter_length; j++) {
-				result[i][j] = 0;
-				for(int k = j-filter_length; k <= j; k++) {
-					int index = k;
-					if(index < 0) {
-						index = 0;
-					}
-					if(index > c-1) {
-						index = c-1;
-					}
-					result[i][j] += unfiltered[i][index];
-				}
-				result[i][j] /= filter_length+1;
-			}
-		}
-		return result;
+		return new Profile(splineData).resample(dt, wheelbase, filter_length, v_max, v_tau, w_max, w_tau).toArray();
 	}
 }
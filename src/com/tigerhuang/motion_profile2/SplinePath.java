@@ -0,0 +1,368 @@
+package com.tigerhuang.motion_profile2;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * A path made of consecutive QuinticBeziers, evaluated by a global parameter.
+ * 
+ * The global parameter u runs from 0 to the number of segments. The integer
+ * part selects the segment and the fractional part is the arc parameter within it.
+ * The coefficients of every segment are kept in one flat array so that evaluation
+ * along the path does not have to hop between objects.
+ * 
+ * @author Tiger Huang
+ *
+ */
+public class SplinePath {
+	// Number of coefficients stored per segment
+	private static final int STRIDE = 12;
+
+	// The segments making up the path
+	private final QuinticBezier[] segments;
+
+	// Polynomial coefficients of every segment
+	// The format is [cxt5, ..., cxt0, cyt5, ..., cyt0; ...]
+	private final double[] coefficients;
+
+	// Arc length from the start of the path to the start of each segment (computed on first use, and volatile so a table built on one thread is seen whole by others)
+	private volatile double[] offsets;
+
+	/**
+	 * Creates a SplinePath from the specified segments.
+	 * 
+	 * @param segments the segments making up the path (at least 1)
+	 */
+	public SplinePath(QuinticBezier[] segments) {
+		this.segments = segments;
+		coefficients = new double[segments.length * STRIDE];
+		for(int i = 0; i < segments.length; i++) {
+			segments[i].getCoefficients(coefficients, i * STRIDE);
+		}
+	}
+
+	/**
+	 * Gets the number of segments in the path.
+	 * 
+	 * @return the number of segments
+	 */
+	public int getSegmentCount() {
+		return segments.length;
+	}
+
+	/**
+	 * Gets a single segment of the path.
+	 * 
+	 * @param i the index of the segment
+	 * @return the segment
+	 */
+	public QuinticBezier getSegment(int i) {
+		return segments[i];
+	}
+
+	/**
+	 * Finds the segment containing global parameter u.
+	 * 
+	 * @param u The global parameter where 0 &#8804; u &#8804; number of segments
+	 * @return the index of the segment
+	 */
+	private int segmentIndex(double u) {
+		int i = (int)u;
+		if(i >= segments.length) {
+			i = segments.length-1;
+		}
+		if(i < 0) {
+			i = 0;
+		}
+		return i;
+	}
+
+	/**
+	 * Gets the x position at global parameter u.
+	 * 
+	 * @param u The global parameter where 0 &#8804; u &#8804; number of segments
+	 * @return the x position
+	 */
+	public double getX(double u) {
+		int i = segmentIndex(u);
+		double t = u - i;
+		double[] c = coefficients;
+		int o = i * STRIDE;
+		return ((((c[o]*t + c[o+1])*t + c[o+2])*t + c[o+3])*t + c[o+4])*t + c[o+5];
+	}
+
+	/**
+	 * Gets the y position at global parameter u.
+	 * 
+	 * @param u The global parameter where 0 &#8804; u &#8804; number of segments
+	 * @return the y position
+	 */
+	public double getY(double u) {
+		int i = segmentIndex(u);
+		double t = u - i;
+		double[] c = coefficients;
+		int o = i * STRIDE + 6;
+		return ((((c[o]*t + c[o+1])*t + c[o+2])*t + c[o+3])*t + c[o+4])*t + c[o+5];
+	}
+
+	/**
+	 * Gets the first derivative of x position at global parameter u.
+	 * 
+	 * @param u The global parameter where 0 &#8804; u &#8804; number of segments
+	 * @return the first derivative of x position
+	 */
+	public double getDX(double u) {
+		int i = segmentIndex(u);
+		double t = u - i;
+		double[] c = coefficients;
+		int o = i * STRIDE;
+		return (((5*c[o]*t + 4*c[o+1])*t + 3*c[o+2])*t + 2*c[o+3])*t + c[o+4];
+	}
+
+	/**
+	 * Gets the first derivative of y position at global parameter u.
+	 * 
+	 * @param u The global parameter where 0 &#8804; u &#8804; number of segments
+	 * @return the first derivative of y position
+	 */
+	public double getDY(double u) {
+		int i = segmentIndex(u);
+		double t = u - i;
+		double[] c = coefficients;
+		int o = i * STRIDE + 6;
+		return (((5*c[o]*t + 4*c[o+1])*t + 3*c[o+2])*t + 2*c[o+3])*t + c[o+4];
+	}
+
+	/**
+	 * Gets the heading at global parameter u.
+	 * 
+	 * @param u The global parameter where 0 &#8804; u &#8804; number of segments
+	 * @return the heading (normalized so -PI &#8804; heading &#8804; PI)
+	 */
+	public double getHeading(double u) {
+		return QuinticBezier.heading(getDX(u), getDY(u));
+	}
+
+	/**
+	 * Gets the curvature at global parameter u.
+	 * 
+	 * @param u The global parameter where 0 &#8804; u &#8804; number of segments
+	 * @return the curvature
+	 */
+	public double getCurvature(double u) {
+		int i = segmentIndex(u);
+		double t = u - i;
+		double[] c = coefficients;
+		int o = i * STRIDE;
+		double dx = (((5*c[o]*t + 4*c[o+1])*t + 3*c[o+2])*t + 2*c[o+3])*t + c[o+4];
+		double ddx = ((20*c[o]*t + 12*c[o+1])*t + 6*c[o+2])*t + 2*c[o+3];
+		o += 6;
+		double dy = (((5*c[o]*t + 4*c[o+1])*t + 3*c[o+2])*t + 2*c[o+3])*t + c[o+4];
+		double ddy = ((20*c[o]*t + 12*c[o+1])*t + 6*c[o+2])*t + 2*c[o+3];
+		return QuinticBezier.curvature(dx, dy, ddx, ddy);
+	}
+
+	/**
+	 * Evaluates position and derivatives at global parameter u in a single pass.
+	 * 
+	 * @param u The global parameter where 0 &#8804; u &#8804; number of segments
+	 * @param result The buffer to fill. The layout is the same as QuinticBezier.evaluate.
+	 */
+	public void evaluate(double u, double[] result) {
+		int i = segmentIndex(u);
+		double t = u - i;
+		double[] c = coefficients;
+		int o = i * STRIDE;
+		double x = ((((c[o]*t + c[o+1])*t + c[o+2])*t + c[o+3])*t + c[o+4])*t + c[o+5];
+		double dx = (((5*c[o]*t + 4*c[o+1])*t + 3*c[o+2])*t + 2*c[o+3])*t + c[o+4];
+		double ddx = ((20*c[o]*t + 12*c[o+1])*t + 6*c[o+2])*t + 2*c[o+3];
+		o += 6;
+		double y = ((((c[o]*t + c[o+1])*t + c[o+2])*t + c[o+3])*t + c[o+4])*t + c[o+5];
+		double dy = (((5*c[o]*t + 4*c[o+1])*t + 3*c[o+2])*t + 2*c[o+3])*t + c[o+4];
+		double ddy = ((20*c[o]*t + 12*c[o+1])*t + 6*c[o+2])*t + 2*c[o+3];
+		result[0] = x;
+		result[1] = y;
+		result[2] = dx;
+		result[3] = dy;
+		result[4] = ddx;
+		result[5] = ddy;
+		if(result.length > 6) {
+			result[6] = QuinticBezier.heading(dx, dy);
+		}
+		if(result.length > 7) {
+			result[7] = QuinticBezier.curvature(dx, dy, ddx, ddy);
+		}
+	}
+
+	/**
+	 * Gets the positions at many global parameters.
+	 * 
+	 * @param us the global parameters to evaluate at
+	 * @param from the index of the first parameter to evaluate
+	 * @param to one past the index of the last parameter to evaluate
+	 * @param xs the array to fill with x positions
+	 * @param ys the array to fill with y positions
+	 */
+	public void getPoints(double[] us, int from, int to, double[] xs, double[] ys) {
+		double[] c = coefficients;
+		for(int j = from; j < to; j++) {
+			double u = us[j];
+			int i = segmentIndex(u);
+			double t = u - i;
+			int o = i * STRIDE;
+			xs[j] = ((((c[o]*t + c[o+1])*t + c[o+2])*t + c[o+3])*t + c[o+4])*t + c[o+5];
+			o += 6;
+			ys[j] = ((((c[o]*t + c[o+1])*t + c[o+2])*t + c[o+3])*t + c[o+4])*t + c[o+5];
+		}
+	}
+
+	/**
+	 * Gets the headings at many global parameters.
+	 * 
+	 * @param us the global parameters to evaluate at
+	 * @param from the index of the first parameter to evaluate
+	 * @param to one past the index of the last parameter to evaluate
+	 * @param hs the array to fill with headings
+	 */
+	public void getHeadings(double[] us, int from, int to, double[] hs) {
+		double[] c = coefficients;
+		for(int j = from; j < to; j++) {
+			double u = us[j];
+			int i = segmentIndex(u);
+			double t = u - i;
+			int o = i * STRIDE;
+			double dx = (((5*c[o]*t + 4*c[o+1])*t + 3*c[o+2])*t + 2*c[o+3])*t + c[o+4];
+			o += 6;
+			double dy = (((5*c[o]*t + 4*c[o+1])*t + 3*c[o+2])*t + 2*c[o+3])*t + c[o+4];
+			hs[j] = QuinticBezier.heading(dx, dy);
+		}
+	}
+
+	/**
+	 * Gets the curvatures at many global parameters.
+	 * 
+	 * @param us the global parameters to evaluate at
+	 * @param from the index of the first parameter to evaluate
+	 * @param to one past the index of the last parameter to evaluate
+	 * @param ks the array to fill with curvatures
+	 */
+	public void getCurvatures(double[] us, int from, int to, double[] ks) {
+		for(int j = from; j < to; j++) {
+			ks[j] = getCurvature(us[j]);
+		}
+	}
+
+	/**
+	 * Gets the total arc length of the path.
+	 * 
+	 * @return the arc length
+	 */
+	public double getLength() {
+		return getOffsets()[segments.length];
+	}
+
+	/**
+	 * Gets the arc length from the start of the path to global parameter u.
+	 * 
+	 * @param u The global parameter where 0 &#8804; u &#8804; number of segments
+	 * @return the arc length
+	 */
+	public double getLength(double u) {
+		int i = segmentIndex(u);
+		return getOffsets()[i] + segments[i].getLength(u - i);
+	}
+
+	/**
+	 * Gets the arc length from the start of the path to the start of a segment.
+	 * 
+	 * @param i the index of the segment where 0 &#8804; i &#8804; number of segments
+	 * @return the arc length
+	 */
+	public double getOffset(int i) {
+		return getOffsets()[i];
+	}
+
+	/**
+	 * Gets the global parameter at a given arc length from the start of the path.
+	 * 
+	 * @param s The arc length where 0 &#8804; s &#8804; getLength()
+	 * @return the global parameter
+	 */
+	public double getParameter(double s) {
+		double[] table = getOffsets();
+		int lo = 0;
+		int hi = segments.length;
+		while(hi - lo > 1) {
+			int mid = (lo + hi) >>> 1;
+			if(table[mid] <= s) {
+				lo = mid;
+			}
+			else {
+				hi = mid;
+			}
+		}
+		return lo + segments[lo].getParameter(s - table[lo]);
+	}
+
+	/**
+	 * Gets the arc length offsets of the segments, computing them if needed.
+	 * 
+	 * @return the arc length from the start of the path to the start of each segment
+	 */
+	private double[] getOffsets() {
+		double[] table = offsets;
+		if(table == null) {
+			table = new double[segments.length+1];
+			for(int i = 0; i < segments.length; i++) {
+				table[i+1] = table[i] + segments[i].getLength();
+			}
+			offsets = table;
+		}
+		return table;
+	}
+
+	/**
+	 * Finds the global parameter of the point on the path closest to a given point.
+	 * 
+	 * Segments are visited in order of their bounding distance and skipped
+	 * once they cannot contain a closer point.
+	 * 
+	 * @param px the x position of the point
+	 * @param py the y position of the point
+	 * @return the global parameter of the closest point where 0 &#8804; u &lt; number of segments
+	 */
+	public double project(double px, double py) {
+		// Order segments by bounding distance
+		int n = segments.length;
+		double[] bounds = new double[n];
+		Integer[] order = new Integer[n];
+		for(int i = 0; i < n; i++) {
+			bounds[i] = segments[i].getBoundDistance(px, py);
+			order[i] = i;
+		}
+		Arrays.sort(order, new Comparator<Integer>() {
+			@Override
+			public int compare(Integer a, Integer b) {
+				return Double.compare(bounds[a], bounds[b]);
+			}
+		});
+
+		// Project onto each candidate segment
+		double best = Double.MAX_VALUE;
+		double u = 0;
+		for(int j = 0; j < n; j++) {
+			int i = order[j];
+			if(bounds[i] >= best) {
+				break;
+			}
+			QuinticBezier segment = segments[i];
+			double t = segment.project(px, py);
+			double d = Math.hypot(segment.getX(t) - px, segment.getY(t) - py);
+			if(d < best) {
+				best = d;
+				u = i + t;
+			}
+		}
+		return Math.min(u, Math.nextDown((double)n));
+	}
+}
@@ -0,0 +1,302 @@
+package com.tigerhuang.motion_profile2;
+
+import java.util.Arrays;
+
+/**
+ * A profile resampled at a fixed timestep.
+ *
+ * Only the position, velocity, heading and curvature at each timestep are found up front.
+ * Every channel is computed and filtered the first time it is read, and kept for later reads,
+ * so callers that only need a few channels do not pay for the rest.
+ *
+ * @author Tiger Huang
+ *
+ */
+public class TimeProfile {
+	// Unfiltered values at each timestep
+	private double[] lp;
+	private double[] lv;
+	private double[] ap;
+	private double[] kt;
+	private double[] av;
+	// Channels computed so far, with their ranges
+	private double[][] channels;
+	private double[] minimums;
+	private double[] maximums;
+	// Holds the unfiltered samples of the boxcar filter
+	private double[] window;
+	// Number of timesteps before filtering
+	private int count;
+
+	// Parameters
+	private double dt;
+	private double wheelbase;
+	private int filter_length;
+	private double v_max;
+	private double v_tau;
+	private double w_max;
+	private double w_tau;
+
+	/**
+	 * Resamples a profile at a fixed timestep.
+	 *
+	 * @param profile The profile to resample
+	 * @param dt The timestep
+	 * @param wheelbase The distance between the robot's wheels
+	 * @param filter_length The length of the boxcar filter applied to each channel in number of timesteps, or 0 for none
+	 * @param v_max The maximum linear velocity
+	 * @param v_tau The velocity time constant for linear motion at max voltage
+	 * @param w_max The maximum angular velocity
+	 * @param w_tau The velocity time constant for angular motion at max voltage
+	 */
+	public TimeProfile(Profile profile, double dt, double wheelbase, int filter_length,
+			double v_max, double v_tau,
+			double w_max, double w_tau) {
+		this.dt = dt;
+		this.wheelbase = wheelbase;
+		this.filter_length = filter_length;
+		this.v_max = v_max;
+		this.v_tau = v_tau;
+		this.w_max = w_max;
+		this.w_tau = w_tau;
+		int n = Channel.values().length;
+		channels = new double[n][];
+		minimums = new double[n];
+		maximums = new double[n];
+		window = new double[filter_length+1];
+
+		// Explode data
+		double[] ts = profile.ts;
+		double[] ds = profile.ds;
+		double[] ls = profile.ls;
+		double[] hs = profile.hs;
+		double[] ks = profile.ks;
+		double[] vs = profile.vs;
+		int l = ts.length;
+
+		// Initialize arrays
+		int c = (int)Math.ceil(ts[l-1]/dt);
+		count = c;
+		lp = new double[c];
+		lv = new double[c];
+		ap = new double[c];
+		kt = new double[c];
+
+		// Find time parameterized linear position, velocity, heading and curvature,
+		// walking through the samples since the times only increase
+		lv[0] = vs[0];
+		lp[0] = 0;
+		lp[1] = 0;
+		ap[0] = 0;
+		kt[0] = ks[0];
+		for(int i = 0, j = 1; i < l-1 && j < c;) {
+			double t = dt*j;
+			if(ts[i+1] >= t) {
+				double x = (t-ts[i]) / (ts[i+1]-ts[i]);
+				lv[j] = (1-x)*vs[i] + x*vs[i+1];
+				lp[j] = ds[i] + x*ls[i];
+				ap[j] = (1-x)*hs[i] + x*hs[i+1];
+				kt[j] = (1-x)*ks[i] + x*ks[i+1];
+				j++;
+			}
+			else {
+				i++;
+			}
+		}
+	}
+
+	/**
+	 * Gets the number of timesteps, including those added by the filter.
+	 *
+	 * @return The length of every channel
+	 */
+	public int size() {
+		return count+filter_length;
+	}
+
+	/**
+	 * Gets the timestep.
+	 *
+	 * @return The timestep (s)
+	 */
+	public double getTimeStep() {
+		return dt;
+	}
+
+	/**
+	 * Gets a channel, computing it on first access.
+	 * The returned array must not be modified.
+	 *
+	 * @param channel The channel to get
+	 * @return The value of the channel at each timestep
+	 */
+	public double[] get(Channel channel) {
+		int index = channel.ordinal();
+		if(channels[index] == null) {
+			compute(channel);
+		}
+		return channels[index];
+	}
+
+	/**
+	 * Gets the smallest value of a channel.
+	 *
+	 * @param channel The channel to check
+	 * @return The minimum of the channel
+	 */
+	public double getMinimum(Channel channel) {
+		get(channel);
+		return minimums[channel.ordinal()];
+	}
+
+	/**
+	 * Gets the largest value of a channel.
+	 *
+	 * @param channel The channel to check
+	 * @return The maximum of the channel
+	 */
+	public double getMaximum(Channel channel) {
+		get(channel);
+		return maximums[channel.ordinal()];
+	}
+
+	/**
+	 * Gets the first eight channels in the layout of generateTimeParameterizedProfile.
+	 *
+	 * @return The linear, angular and voltage channels
+	 */
+	public double[][] toArray() {
+		return new double[][] {
+			get(Channel.LINEAR_POSITION), get(Channel.LINEAR_VELOCITY), get(Channel.LINEAR_ACCELERATION),
+			get(Channel.ANGULAR_POSITION), get(Channel.ANGULAR_VELOCITY), get(Channel.ANGULAR_ACCELERATION),
+			get(Channel.LEFT_VOLTAGE), get(Channel.RIGHT_VOLTAGE)
+		};
+	}
+
+	/**
+	 * Computes a channel, along with any channel that comes from the same loop.
+	 *
+	 * @param channel The channel to compute
+	 */
+	private void compute(Channel channel) {
+		int c = count;
+		int n = c+filter_length;
+		switch(channel) {
+			case LINEAR_POSITION:
+				finish(channel, lp);
+				break;
+			case LINEAR_VELOCITY:
+				finish(channel, lv);
+				break;
+			case ANGULAR_POSITION:
+				finish(channel, ap);
+				break;
+			case ANGULAR_VELOCITY:
+				finish(channel, getAngularVelocity());
+				break;
+			case LINEAR_ACCELERATION:
+			case ANGULAR_ACCELERATION: {
+				double[] v = channel == Channel.LINEAR_ACCELERATION ? lv : getAngularVelocity();
+				double[] a = new double[n];
+				for(int j = 0; j < c-1; j++) {
+					a[j] = (v[j+1]-v[j]) / dt;
+				}
+				a[c-1] = a[c-2];
+				finish(channel, a);
+				break;
+			}
+			case LEFT_VOLTAGE:
+			case RIGHT_VOLTAGE: {
+				// http://dynref.engr.illinois.edu/rkt.html
+				double[] vl = new double[n];
+				double[] vr = new double[n];
+				for(int j = 0; j < c-1; j++) {
+					double dl = lp[j+1] - lp[j];
+					double k1 = kt[j];
+					double v1 = lv[j];
+					double k2 = kt[j+1];
+					double v2 = lv[j+1];
+					double A = v_tau/(2*dl*v_max);
+					double B = w_tau*(k1+k2)/(4*dl*w_max);
+					double C = w_tau*(k2-k1)/(4*dl*w_max);
+					double D = 1/(2*v_max);
+					double E = wheelbase*(k1+k2)/(8*v_max);
+					vl[j] = (A-B)*(v2*v2-v1*v1) - C*(v1+v2)*(v1+v2) + (D-E)*(v1+v2);
+					vr[j] = (A+B)*(v2*v2-v1*v1) + C*(v1+v2)*(v1+v2) + (D+E)*(v1+v2);
+				}
+				vl[c-1] = vl[c-2];
+				vr[c-1] = vr[c-2];
+				finish(Channel.LEFT_VOLTAGE, vl);
+				finish(Channel.RIGHT_VOLTAGE, vr);
+				break;
+			}
+			case LEFT_DISTANCE:
+			case RIGHT_DISTANCE: {
+				// Each wheel is half the wheelbase from the center, so it travels the heading change times that much more or less
+				double side = channel == Channel.LEFT_DISTANCE ? -wheelbase/2 : wheelbase/2;
+				double[] d = new double[n];
+				for(int j = 0; j < c; j++) {
+					d[j] = lp[j] + side*ap[j];
+				}
+				finish(channel, d);
+				break;
+			}
+		}
+	}
+
+	/**
+	 * Gets the unfiltered angular velocity, which both angular velocity and acceleration are found from.
+	 */
+	private double[] getAngularVelocity() {
+		if(av == null) {
+			av = new double[count];
+			for(int j = 0; j < count; j++) {
+				av[j] = lv[j] * kt[j];
+			}
+		}
+		return av;
+	}
+
+	/**
+	 * Filters a channel and stores it with its range.
+	 *
+	 * @param channel The channel being stored
+	 * @param data The unfiltered values, which are filtered in place if they have room for the filter,
+	 * and copied otherwise
+	 */
+	private void finish(Channel channel, double[] data) {
+		int n = count+filter_length;
+		if(data.length < n) {
+			data = Arrays.copyOf(data, n);
+		}
+		int index = channel.ordinal();
+		double min = Double.MAX_VALUE;
+		double max = -Double.MAX_VALUE;
+		if(filter_length == 0) {
+			for(int j = 0; j < count; j++) {
+				min = Math.min(min, data[j]);
+				max = Math.max(max, data[j]);
+			}
+		}
+		else {
+			// Boxcar filter keeping a running sum of the window,
+			// with samples before the start repeating the first one and samples past the end repeating the last one
+			double first = data[0];
+			double last = data[count-1];
+			Arrays.fill(window, first);
+			double sum = (filter_length+1)*first;
+			for(int j = 0, k = 0; j < n; j++) {
+				double x = j < count ? data[j] : last;
+				sum += x - window[k];
+				window[k] = x;
+				k = k == filter_length ? 0 : k+1;
+				data[j] = sum/(filter_length+1);
+				min = Math.min(min, data[j]);
+				max = Math.max(max, data[j]);
+			}
+		}
+		channels[index] = data;
+		minimums[index] = min;
+		maximums[index] = max;
+	}
+}
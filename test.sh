@@ -0,0 +1,17 @@
+#!/bin/sh
+
+# Build
+./build.sh
+
+# Create test build directory
+if [ ! -e build_test ]; then
+	mkdir build_test
+fi
+
+# Build tests
+cd test
+javac -g -cp ../build `find . -name "*.java"` -d ../build_test
+cd ..
+
+# Run
+java -cp build:build_test com.tigerhuang.motion_profile2.SolverTest
@@ -0,0 +1,145 @@
+package com.tigerhuang.motion_profile2;
+
+/**
+ * Checks the velocity solver modes against each other on a test path
+ * Run with test.sh, which exits with an error if any check fails
+ *
+ * @author Tiger Huang
+ */
+public class SolverTest {
+	// Parameters, the same as the defaults of the editor
+	private static final double SEGMENT_LENGTH = 0.01;
+	private static final double WHEELBASE = 2.1;
+	private static final double SMOOTHING = 0.01;
+	private static final int MAX_ITERATIONS = 1000;
+	private static final double ADJUST_SCALE = 0.01;
+	private static final double ADJUST_OFFSET = 0.99;
+	private static final double V_MAX = 7;
+	private static final double V_TAU = 0.25;
+	private static final double W_MAX = V_MAX*2/WHEELBASE;
+	private static final double W_TAU = V_TAU;
+
+	// Largest relative difference in duration between MULTIGRID and EXACT mode
+	private static final double MULTIGRID_TOLERANCE = 0.05;
+
+	// Number of failed checks
+	private static int failures = 0;
+
+	public static void main(String[] args) {
+		checkMultigrid();
+		checkParallel();
+		if(failures > 0) {
+			System.out.println(failures + " checks failed");
+			System.exit(1);
+		}
+		System.out.println("All checks passed");
+	}
+
+	/**
+	 * Checks that MULTIGRID mode finds about the same duration as EXACT mode,
+	 * without breaking the voltage limit by more
+	 */
+	private static void checkMultigrid() {
+		SplinePath splines = testPath();
+		Limit[] limits = voltageLimit(splines);
+		SegmentData exact = solve(splines, limits, SolverMode.EXACT, false);
+		SegmentData multigrid = solve(splines, limits, SolverMode.MULTIGRID, false);
+		double exactDuration = new Profile(exact).getDuration();
+		double multigridDuration = new Profile(multigrid).getDuration();
+		check("MULTIGRID duration " + multigridDuration + " within " + MULTIGRID_TOLERANCE + " of EXACT " + exactDuration,
+				Math.abs(multigridDuration/exactDuration - 1) <= MULTIGRID_TOLERANCE);
+		double exactVoltage = worstVoltage(exact, limits);
+		double multigridVoltage = worstVoltage(multigrid, limits);
+		check("MULTIGRID voltage " + multigridVoltage + " at most EXACT " + exactVoltage,
+				multigridVoltage <= exactVoltage);
+	}
+
+	/**
+	 * Checks that solving in parallel gives exactly the same velocities as solving serially in every mode
+	 */
+	private static void checkParallel() {
+		SplinePath splines = testPath();
+		Limit[] limits = voltageLimit(splines);
+		for(SolverMode mode : SolverMode.values()) {
+			double[] serial = solve(splines, limits, mode, false).vs;
+			double[] parallel = solve(splines, limits, mode, true).vs;
+			double difference = 0;
+			for(int i = 0; i < serial.length; i++) {
+				difference = Math.max(difference, Math.abs(parallel[i]-serial[i]));
+			}
+			check(mode + " parallel velocities differ from serial by " + difference,
+					difference == 0);
+		}
+	}
+
+	/**
+	 * Builds a winding path of about 2250 samples
+	 */
+	private static SplinePath testPath() {
+		Waypoint[] waypoints = new Waypoint[6];
+		for(int i = 0; i < waypoints.length; i++) {
+			Waypoint waypoint = new Waypoint();
+			waypoint.x = 3*Math.cos(i*1.1);
+			waypoint.y = 4*i + Math.sin(i);
+			waypoint.v_t = 0.3*Math.sin(i);
+			waypoint.v_m = 2;
+			waypoint.a_t = -Math.PI/2;
+			waypoint.a_m = 5;
+			waypoints[i] = waypoint;
+		}
+		return SplineGenerator.splinesFromWaypoints(waypoints);
+	}
+
+	/**
+	 * Creates a voltage limit covering the whole path
+	 */
+	private static Limit[] voltageLimit(SplinePath splines) {
+		Limit limit = new Limit();
+		limit.t1 = 0;
+		limit.t2 = Math.nextDown(splines.getSegmentCount());
+		limit.type = LimitType.VOLTAGE;
+		limit.limit = 1;
+		return new Limit[] {limit};
+	}
+
+	/**
+	 * Solves the test path from scratch
+	 */
+	private static SegmentData solve(SplinePath splines, Limit[] limits, SolverMode mode, boolean parallel) {
+		SegmentData splineData = SplineGenerator.uniformLengthSegmentData(splines, SEGMENT_LENGTH, parallel);
+		SplineGenerator.generateVelocityProfile(splineData, limits, mode, false, parallel,
+				WHEELBASE, SMOOTHING, MAX_ITERATIONS, ADJUST_SCALE, ADJUST_OFFSET,
+				0, 0, V_MAX, V_TAU, W_MAX, W_TAU, 0, null);
+		return splineData;
+	}
+
+	/**
+	 * Finds the largest wheel voltage of any interval as a fraction of its limit
+	 */
+	private static double worstVoltage(SegmentData splineData, Limit[] limits) {
+		CompiledLimits compiled = new CompiledLimits(splineData, limits, WHEELBASE, 0, 0, V_MAX, V_TAU, W_MAX, W_TAU);
+		double[] vs = splineData.vs;
+		double worst = 0;
+		for(int i = 0; i < vs.length-1; i++) {
+			if(compiled.maxVoltage[i] == Double.MAX_VALUE) {
+				continue;
+			}
+			double v1 = vs[i];
+			double v2 = vs[i+1];
+			double vl = (compiled.a[i]-compiled.b[i])*(v2*v2-v1*v1) - compiled.c[i]*(v1+v2)*(v1+v2) + (compiled.d[i]-compiled.e[i])*(v1+v2);
+			double vr = (compiled.a[i]+compiled.b[i])*(v2*v2-v1*v1) + compiled.c[i]*(v1+v2)*(v1+v2) + (compiled.d[i]+compiled.e[i])*(v1+v2);
+			worst = Math.max(worst, Math.max(Math.abs(vl), Math.abs(vr))/compiled.maxVoltage[i]);
+		}
+		return worst;
+	}
+
+	/**
+	 * Reports the result of a check
+	 */
+	private static void check(String name, boolean passed) {
+		System.out.println((passed ? "PASS " : "FAIL ") + name);
+		if(!passed) {
+			failures++;
+		}
+	}
+}